@@ -0,0 +1,94 @@
+package camouse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Recorded frames shared by the benchmarks, taken from {@code -Dcamouse.bench.source}
+ * (a {@link FrameSource} spec such as {@code file:frames/%04d.png}; the synthetic hand by default)
+ * and scaled to 640x480. Masks and contours are precomputed so later stages can be measured on their own.
+ */
+class BenchmarkFrames {
+    static final int WIDTH = 640;
+    static final int HEIGHT = 480;
+    private static final int DEFAULT_COUNT = 60;
+
+    final List<Frame> frames = new ArrayList<>();
+    private int next;
+
+    static {
+        // load the native OpenCV library
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+    }
+
+    BenchmarkFrames() {
+        String spec = System.getProperty("camouse.bench.source", "synthetic");
+        int count = Integer.getInteger("camouse.bench.frames", DEFAULT_COUNT);
+        FrameSource source = FrameSource.fromSpec(spec, true, true);
+        if (!source.open()) {
+            throw new IllegalStateException("Cannot open " + source);
+        }
+
+        Mat read = new Mat();
+        PreprocessStage preprocess = new PreprocessStage(() -> ProcessingSettings.DEFAULTS);
+        DetectionStage detection = new DetectionStage();
+        while (this.frames.size() < count && source.read(read)) {
+            Frame frame = new Frame(null);
+            if (read.width() != WIDTH || read.height() != HEIGHT) {
+                Imgproc.resize(read, frame.image, new Size(WIDTH, HEIGHT), 0, 0, Imgproc.INTER_AREA);
+            } else {
+                read.copyTo(frame.image);
+            }
+            preprocess.process(frame);
+            detection.process(frame);
+            this.frames.add(frame);
+        }
+        source.release();
+        read.release();
+        preprocess.close();
+        detection.close();
+        if (this.frames.isEmpty()) {
+            throw new IllegalStateException("No frames read from " + source);
+        }
+    }
+
+    // cycle through the frames so no single image dominates the result
+    Frame next() {
+        Frame frame = this.frames.get(this.next);
+        this.next = (this.next + 1) % this.frames.size();
+        return frame;
+    }
+
+    // the next frame with a detected hand
+    Frame nextDetected() {
+        for (int i = 0; i < this.frames.size(); i++) {
+            Frame frame = next();
+            if (frame.handDetected) {
+                return frame;
+            }
+        }
+        throw new IllegalStateException("No hand detected in any benchmark frame");
+    }
+
+    List<MatOfPoint> contours() {
+        List<MatOfPoint> contours = new ArrayList<>();
+        for (Frame frame : this.frames) {
+            if (frame.handDetected) {
+                contours.add(frame.contour);
+            }
+        }
+        return contours;
+    }
+
+    void dispose() {
+        for (Frame frame : this.frames) {
+            frame.dispose();
+        }
+    }
+}
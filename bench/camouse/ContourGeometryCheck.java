@@ -0,0 +1,209 @@
+package camouse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfInt;
+import org.opencv.core.MatOfInt4;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Checks that ContourGeometry gives the same results as the OpenCV routines it replaces: arcLength,
+ * approxPolyDP, convexHull and convexityDefects, on the contours of random blobs (circles, boxes,
+ * thick lines, some with noise), found with and without chain approximation, and on the synthetic
+ * hand. Hull and defects are compared on the raw contour and on its approximation, with the same
+ * epsilon DetectionStage uses. Imgproc.convexityDefects rejects some self-intersecting contours
+ * ("convex hull indices are not monotonous"); those are counted and skipped, ContourGeometry gives
+ * them their defects instead.
+ * The exit code is 1 when any result differs.
+ *
+ * Usage: {@code camouse.ContourGeometryCheck [--images=N] [--seed=N]}
+ */
+public class ContourGeometryCheck {
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+    // how many mismatches are printed in full
+    private static final int REPORTED = 10;
+
+    private final ContourGeometry geometry = new ContourGeometry();
+    private int images = 3000;
+    private long seed = 42;
+    private int contours;
+    private int mismatches;
+    private int rejectedByOpenCv;
+
+    public static void main(String[] args) {
+        // load the native OpenCV library
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+        ContourGeometryCheck check = new ContourGeometryCheck();
+        check.parse(Arrays.asList(args));
+        System.exit(check.run() ? 0 : 1);
+    }
+
+    private void parse(List<String> args) {
+        for (String arg : args) {
+            if (arg.startsWith("--images=")) {
+                this.images = Integer.parseInt(arg.substring("--images=".length()));
+            } else if (arg.startsWith("--seed=")) {
+                this.seed = Long.parseLong(arg.substring("--seed=".length()));
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+    }
+
+    private boolean run() {
+        Random random = new Random(this.seed);
+        Mat image = new Mat();
+        Mat noise = new Mat();
+        Mat hierarchy = new Mat();
+        List<MatOfPoint> found = new ArrayList<>();
+        for (int i = 0; i < this.images; i++) {
+            drawBlobs(random, image, noise, i % 3 == 0);
+            Imgproc.findContours(image, found, hierarchy, Imgproc.RETR_CCOMP,
+              i % 2 == 0 ? Imgproc.CHAIN_APPROX_SIMPLE : Imgproc.CHAIN_APPROX_NONE);
+            for (MatOfPoint contour : found) {
+                check(contour);
+                contour.release();
+            }
+            found.clear();
+        }
+
+        // the hand the detector actually sees
+        BenchmarkFrames frames = new BenchmarkFrames();
+        for (int i = 0; i < 50; i++) {
+            check(frames.nextDetected().contour);
+        }
+
+        image.release();
+        noise.release();
+        hierarchy.release();
+        System.out.println(this.contours + " contours, " + this.mismatches + " mismatches, "
+          + this.rejectedByOpenCv + " rejected by Imgproc.convexityDefects");
+        System.out.println(this.mismatches == 0 ? "PASSED" : "FAILED");
+        return this.mismatches == 0;
+    }
+
+    // a few filled shapes, optionally roughened with thresholded noise
+    private static void drawBlobs(Random random, Mat image, Mat noise, boolean noisy) {
+        image.create(HEIGHT, WIDTH, CvType.CV_8U);
+        image.setTo(Scalar.all(0));
+        Scalar white = Scalar.all(255);
+        int shapes = 1 + random.nextInt(8);
+        for (int i = 0; i < shapes; i++) {
+            Point center = new Point(random.nextInt(WIDTH), random.nextInt(HEIGHT));
+            switch (random.nextInt(3)) {
+                case 0:
+                    Imgproc.circle(image, center, 5 + random.nextInt(60), white, -1);
+                    break;
+                case 1:
+                    Imgproc.rectangle(image, center, new Point(center.x + random.nextInt(80) - 40,
+                      center.y + random.nextInt(80) - 40), white, -1);
+                    break;
+                default:
+                    Imgproc.line(image, center, new Point(random.nextInt(WIDTH), random.nextInt(HEIGHT)), white,
+                      1 + random.nextInt(12));
+                    break;
+            }
+        }
+        if (noisy) {
+            noise.create(HEIGHT, WIDTH, CvType.CV_8U);
+            Core.randu(noise, 0, 256);
+            Imgproc.threshold(noise, noise, 200, 255, Imgproc.THRESH_BINARY);
+            Core.bitwise_or(image, noise, image);
+            Imgproc.medianBlur(image, image, 3);
+        }
+    }
+
+    private void check(MatOfPoint contour) {
+        this.contours++;
+        int count = (int) contour.total();
+        int[] points = new int[count * 2];
+        contour.get(0, 0, points);
+        MatOfPoint2f contour2f = new MatOfPoint2f();
+        contour.convertTo(contour2f, CvType.CV_32F);
+
+        double expectedLength = Imgproc.arcLength(contour2f, false);
+        double length = ContourGeometry.arcLength(points, count, false);
+        if (expectedLength != length) {
+            mismatch("arcLength", count, expectedLength + " vs " + length);
+            contour2f.release();
+            return;
+        }
+
+        double epsilon = 0.05 * length;
+        MatOfPoint2f approx2f = new MatOfPoint2f();
+        Imgproc.approxPolyDP(contour2f, approx2f, epsilon, true);
+        MatOfPoint approx = new MatOfPoint();
+        approx2f.convertTo(approx, CvType.CV_32S);
+        int[] expectedApprox = toArray(approx, 2);
+        int[] approxPoints = new int[count * 2];
+        int approxCount = this.geometry.approxPolyDP(points, count, epsilon, approxPoints);
+        if (!Arrays.equals(expectedApprox, Arrays.copyOf(approxPoints, approxCount * 2))) {
+            mismatch("approxPolyDP", count, Arrays.toString(expectedApprox) + " vs "
+              + Arrays.toString(Arrays.copyOf(approxPoints, approxCount * 2)));
+        } else {
+            hullAndDefects("approximated", approx, approxPoints, approxCount);
+        }
+        hullAndDefects("raw", contour, points, count);
+        contour2f.release();
+        approx2f.release();
+        approx.release();
+    }
+
+    private void hullAndDefects(String what, MatOfPoint contour, int[] points, int count) {
+        MatOfInt hullMat = new MatOfInt();
+        Imgproc.convexHull(contour, hullMat, false);
+        int[] expectedHull = toArray(hullMat, 1);
+        int[] hull = new int[count + 2];
+        int hullCount = this.geometry.convexHull(points, count, hull);
+        if (!Arrays.equals(expectedHull, Arrays.copyOf(hull, hullCount))) {
+            mismatch("convexHull " + what, count, Arrays.toString(expectedHull) + " vs "
+              + Arrays.toString(Arrays.copyOf(hull, hullCount)));
+            hullMat.release();
+            return;
+        }
+
+        MatOfInt4 defectsMat = new MatOfInt4();
+        try {
+            Imgproc.convexityDefects(contour, hullMat, defectsMat);
+        } catch (Exception e) {
+            this.rejectedByOpenCv++;
+            hullMat.release();
+            defectsMat.release();
+            return;
+        }
+        int[] expectedDefects = toArray(defectsMat, 4);
+        int[] defects = new int[hullCount * 4 + 4];
+        int defectCount = ContourGeometry.convexityDefects(points, count, hull, hullCount, defects);
+        if (!Arrays.equals(expectedDefects, Arrays.copyOf(defects, defectCount * 4))) {
+            mismatch("convexityDefects " + what, count, Arrays.toString(expectedDefects) + " vs "
+              + Arrays.toString(Arrays.copyOf(defects, defectCount * 4)));
+        }
+        hullMat.release();
+        defectsMat.release();
+    }
+
+    private static int[] toArray(Mat mat, int channels) {
+        int[] data = new int[(int) mat.total() * channels];
+        if (data.length > 0) {
+            mat.get(0, 0, data);
+        }
+        return data;
+    }
+
+    private void mismatch(String what, int count, String detail) {
+        if (++this.mismatches <= REPORTED) {
+            System.out.println(what + " differs on a contour of " + count + " points: " + detail);
+        }
+    }
+}
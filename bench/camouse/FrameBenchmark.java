@@ -0,0 +1,59 @@
+package camouse;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Whole frames: everything between the camera read and the gesture stage.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FrameBenchmark {
+    // process only the region around the last hand position
+    @Param({"false", "true"})
+    public boolean roi;
+
+    private BenchmarkFrames frames;
+    private PreprocessStage preprocess;
+    private DetectionStage detection;
+
+    @Setup
+    public void setup() {
+        this.frames = new BenchmarkFrames();
+        RoiTracker roiTracker = this.roi ? new RoiTracker() : null;
+        this.preprocess = new PreprocessStage(() -> ProcessingSettings.DEFAULTS, roiTracker);
+        this.detection = new DetectionStage(roiTracker);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.preprocess.close();
+        this.detection.close();
+        this.frames.dispose();
+    }
+
+    // frames are processed in place; the results are the same every time round
+    @Benchmark
+    public boolean preprocessAndDetect() {
+        Frame frame = this.frames.next();
+        this.preprocess.process(frame);
+        this.detection.process(frame);
+        return frame.handDetected;
+    }
+}
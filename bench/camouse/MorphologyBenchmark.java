@@ -0,0 +1,61 @@
+package camouse;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The erode/dilate loops for the iteration counts the erodeNum/dilateNum sliders allow.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MorphologyBenchmark {
+    @Param({"0", "1", "3", "5"})
+    public int erodeNum;
+
+    @Param({"0", "1", "3", "5"})
+    public int dilateNum;
+
+    private BenchmarkFrames frames;
+    private PreprocessStage preprocess;
+    private ProcessingSettings settings;
+    private Frame scratch;
+
+    @Setup
+    public void setup() {
+        this.frames = new BenchmarkFrames();
+        this.preprocess = new PreprocessStage(() -> this.settings);
+        this.preprocess.updateKernels();
+        ProcessingSettings d = ProcessingSettings.DEFAULTS;
+        this.settings = new ProcessingSettings(d.hueStart, d.hueEnd, d.saturationStart, d.saturationEnd,
+          d.valueStart, d.valueEnd, this.erodeNum, this.dilateNum);
+        this.scratch = new Frame(null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.preprocess.close();
+        this.scratch.dispose();
+        this.frames.dispose();
+    }
+
+    @Benchmark
+    public void erodeDilate() {
+        this.preprocess.morphology(this.settings, this.frames.next().mask, this.scratch.morph);
+    }
+}
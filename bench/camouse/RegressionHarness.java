@@ -0,0 +1,272 @@
+package camouse;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+
+/**
+ * Runs a labeled set of frames through the detection path of one or more tracker configurations and
+ * checks fingertip error, thumb state accuracy, frame rate and p99 frame latency against thresholds.
+ * No camera or display is needed; the exit code is 1 when any configuration misses a threshold, so
+ * it can gate a build.
+ * The labels come from the synthetic hand's ground truth (the default, one pass through its script)
+ * or from a recorded session, whose recorded tips and thumb states are taken as the truth; record a
+ * session with a configuration known to be good, or correct one by hand, to make a golden set.
+ *
+ * Usage: {@code camouse.RegressionHarness [--dataset=synthetic|session:<file>] [--passes=N]
+ * [--config="<tracker options>"]... [--max-tip-error=<px>] [--min-detection=<0-1>]
+ * [--min-thumb-accuracy=<0-1>] [--min-fps=<fps>] [--max-p99=<ms>]}
+ */
+public class RegressionHarness {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    // configurations checked when none are given
+    private static final List<String> DEFAULT_CONFIGS =
+      List.of("", "--lut", "--scale=2", "--components", "--no-roi", "--no-still-skip", "--track=5");
+
+    // one frame of the dataset with its ground truth
+    private static class LabeledFrame {
+        final Mat image = new Mat();
+        ProcessingSettings settings;
+        boolean hand;
+        final Point indexTip = new Point();
+        boolean thumbExtended;
+    }
+
+    // what one configuration did on the dataset
+    private static class Result {
+        final String config;
+        int frames;
+        int handFrames;
+        int detected;
+        double tipErrorSum;
+        double maxTipError;
+        int thumbCorrect;
+        long totalNanos;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final List<String> failures = new ArrayList<>();
+
+        Result(String config) {
+            this.config = config;
+        }
+
+        double meanTipError() {
+            return this.detected == 0 ? Double.NaN : this.tipErrorSum / this.detected;
+        }
+
+        double detectionRate() {
+            return this.handFrames == 0 ? 1 : (double) this.detected / this.handFrames;
+        }
+
+        double thumbAccuracy() {
+            return this.handFrames == 0 ? 1 : (double) this.thumbCorrect / this.handFrames;
+        }
+
+        double fps() {
+            return this.frames / (this.totalNanos / 1e9);
+        }
+
+        double p99Millis() {
+            return LatencyHistogram.percentile(this.latency.snapshot(), 0.99) / 1000;
+        }
+    }
+
+    // thresholds, from the command line; the accuracy defaults sit just outside what the current detector does
+    // on the synthetic set (about 11-14 px from the drawn tip, the thumb right in 68% of frames), so they catch
+    // regressions rather than judge absolute quality
+    private double maxTipError = 15;
+    private double minDetection = 0.95;
+    private double minThumbAccuracy = 0.65;
+    private double minFps = 30;
+    private double maxP99Millis = 33;
+    private int passes = 3;
+    private String dataset = "synthetic";
+    private final List<String> configs = new ArrayList<>();
+
+    public static void main(String[] args) throws IOException {
+        // load the native OpenCV library
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+        RegressionHarness harness = new RegressionHarness();
+        harness.parse(Arrays.asList(args));
+        System.exit(harness.run() ? 0 : 1);
+    }
+
+    private void parse(List<String> args) {
+        for (String arg : args) {
+            if (arg.startsWith("--dataset=")) {
+                this.dataset = arg.substring("--dataset=".length());
+            } else if (arg.startsWith("--passes=")) {
+                this.passes = Integer.parseInt(arg.substring("--passes=".length()));
+            } else if (arg.startsWith("--config=")) {
+                this.configs.add(arg.substring("--config=".length()));
+            } else if (arg.startsWith("--max-tip-error=")) {
+                this.maxTipError = Double.parseDouble(arg.substring("--max-tip-error=".length()));
+            } else if (arg.startsWith("--min-detection=")) {
+                this.minDetection = Double.parseDouble(arg.substring("--min-detection=".length()));
+            } else if (arg.startsWith("--min-thumb-accuracy=")) {
+                this.minThumbAccuracy = Double.parseDouble(arg.substring("--min-thumb-accuracy=".length()));
+            } else if (arg.startsWith("--min-fps=")) {
+                this.minFps = Double.parseDouble(arg.substring("--min-fps=".length()));
+            } else if (arg.startsWith("--max-p99=")) {
+                this.maxP99Millis = Double.parseDouble(arg.substring("--max-p99=".length()));
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (this.configs.isEmpty()) {
+            this.configs.addAll(DEFAULT_CONFIGS);
+        }
+    }
+
+    // true if every configuration is within the thresholds
+    private boolean run() throws IOException {
+        List<LabeledFrame> frames = load();
+        System.out.println("Dataset " + this.dataset + ": " + frames.size() + " frames, " + this.passes + " passes");
+        boolean passed = true;
+        for (String config : this.configs) {
+            Result result = measure(config, frames);
+            check(result);
+            report(result);
+            passed &= result.failures.isEmpty();
+        }
+        for (LabeledFrame frame : frames) {
+            frame.image.release();
+        }
+        System.out.println(passed ? "PASSED" : "FAILED");
+        return passed;
+    }
+
+    private List<LabeledFrame> load() throws IOException {
+        List<LabeledFrame> frames = new ArrayList<>();
+        if (this.dataset.equals("synthetic")) {
+            SyntheticHandSource source = new SyntheticHandSource(WIDTH, HEIGHT, false);
+            int count = 0;
+            for (SyntheticHandSource.Pose pose : SyntheticHandSource.defaultScript(WIDTH, HEIGHT)) {
+                count += pose.frames;
+            }
+            source.open();
+            for (int i = 0; i < count; i++) {
+                LabeledFrame frame = new LabeledFrame();
+                source.read(frame.image);
+                frame.settings = ProcessingSettings.DEFAULTS;
+                frame.hand = true;
+                frame.indexTip.x = source.getIndexTip().x;
+                frame.indexTip.y = source.getIndexTip().y;
+                frame.thumbExtended = source.isThumbExtended();
+                frames.add(frame);
+            }
+            source.release();
+        } else if (this.dataset.startsWith("session:")) {
+            try (SessionReader reader = new SessionReader(Paths.get(this.dataset.substring("session:".length())))) {
+                while (reader.next()) {
+                    LabeledFrame frame = new LabeledFrame();
+                    if (!reader.readImage(frame.image)) {
+                        continue;
+                    }
+                    frame.settings = reader.settings != null ? reader.settings : ProcessingSettings.DEFAULTS;
+                    frame.hand = reader.handDetected;
+                    frame.indexTip.x = reader.indexTip.x;
+                    frame.indexTip.y = reader.indexTip.y;
+                    frame.thumbExtended = reader.thumbExtended;
+                    frames.add(frame);
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown dataset: " + this.dataset);
+        }
+        if (frames.isEmpty()) {
+            throw new IllegalStateException("No labeled frames in " + this.dataset);
+        }
+        return frames;
+    }
+
+    // one pass to warm up, then the measured passes
+    private Result measure(String config, List<LabeledFrame> frames) {
+        TrackerOptions options = TrackerOptions.fromArgs(
+          config.isEmpty() ? List.of() : Arrays.asList(config.trim().split("\\s+")));
+        // the numbers must not depend on a calibration saved on this machine
+        options.profileName = null;
+        Result result = new Result(config.isEmpty() ? "(defaults)" : config);
+        // the settings change with the labels only in recorded sessions
+        LabeledFrame[] current = new LabeledFrame[1];
+        List<FrameStage> stages = options.detectionStages(() -> current[0].settings);
+        Frame frame = new Frame(null);
+        for (int pass = 0; pass <= this.passes; pass++) {
+            boolean measured = pass > 0;
+            for (int i = 0; i < frames.size(); i++) {
+                LabeledFrame labeled = frames.get(i);
+                current[0] = labeled;
+                frame.reset(i);
+                labeled.image.copyTo(frame.image);
+                long start = System.nanoTime();
+                frame.captureNanos = start;
+                for (FrameStage stage : stages) {
+                    stage.process(frame);
+                }
+                long elapsed = System.nanoTime() - start;
+                if (measured) {
+                    score(result, labeled, frame, elapsed);
+                }
+            }
+        }
+        for (FrameStage stage : stages) {
+            stage.close();
+        }
+        frame.dispose();
+        return result;
+    }
+
+    private static void score(Result result, LabeledFrame labeled, Frame frame, long elapsed) {
+        result.frames++;
+        result.totalNanos += elapsed;
+        result.latency.record(elapsed);
+        if (!labeled.hand) {
+            return;
+        }
+        result.handFrames++;
+        if (frame.handDetected) {
+            result.detected++;
+            double error = Math.hypot(frame.indexTip.x - labeled.indexTip.x, frame.indexTip.y - labeled.indexTip.y);
+            result.tipErrorSum += error;
+            result.maxTipError = Math.max(result.maxTipError, error);
+        }
+        if (frame.handDetected && frame.thumbExtended == labeled.thumbExtended) {
+            result.thumbCorrect++;
+        }
+    }
+
+    private void check(Result result) {
+        if (!(result.meanTipError() <= this.maxTipError)) {
+            result.failures.add(String.format(Locale.ROOT, "tip error %.2f px > %.2f", result.meanTipError(),
+              this.maxTipError));
+        }
+        if (result.detectionRate() < this.minDetection) {
+            result.failures.add(String.format(Locale.ROOT, "detection %.3f < %.3f", result.detectionRate(),
+              this.minDetection));
+        }
+        if (result.thumbAccuracy() < this.minThumbAccuracy) {
+            result.failures.add(String.format(Locale.ROOT, "thumb accuracy %.3f < %.3f", result.thumbAccuracy(),
+              this.minThumbAccuracy));
+        }
+        if (result.fps() < this.minFps) {
+            result.failures.add(String.format(Locale.ROOT, "%.1f fps < %.1f", result.fps(), this.minFps));
+        }
+        if (result.p99Millis() > this.maxP99Millis) {
+            result.failures.add(String.format(Locale.ROOT, "p99 %.2f ms > %.2f", result.p99Millis(), this.maxP99Millis));
+        }
+    }
+
+    private static void report(Result result) {
+        System.out.println(String.format(Locale.ROOT,
+          "%-20s tip error %.2f px (max %.1f)  detection %.3f  thumb %.3f  %.0f fps  p99 %.2f ms  %s",
+          result.config, result.meanTipError(), result.maxTipError, result.detectionRate(), result.thumbAccuracy(),
+          result.fps(), result.p99Millis(), result.failures.isEmpty() ? "ok" : "FAIL: " + String.join(", ", result.failures)));
+    }
+}
@@ -0,0 +1,195 @@
+package camouse;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * One benchmark per vision step, each on 640x480 frames.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class VisionStageBenchmark {
+    private BenchmarkFrames frames;
+    private PreprocessStage preprocess;
+    private DetectionStage detection;
+    private DetectionStage componentDetection;
+    // a mask with the hand and many small blobs of noise
+    private Mat noisyMorph;
+    private Rect noisyRoi;
+    private Frame scratch;
+    private Mat blurred;
+    private Mat hsv;
+    private MatOfPoint contourOut;
+    private Mat previewTarget;
+    private ColorLut colorLut;
+    private ColorLut colorLutDenoised;
+
+    @Setup
+    public void setup() {
+        this.frames = new BenchmarkFrames();
+        this.preprocess = new PreprocessStage(() -> ProcessingSettings.DEFAULTS);
+        this.preprocess.updateKernels();
+        this.detection = new DetectionStage();
+        this.componentDetection = new DetectionStage(null, null, true);
+        this.scratch = new Frame(null);
+        this.scratch.mask.create(BenchmarkFrames.HEIGHT, BenchmarkFrames.WIDTH, CvType.CV_8UC1);
+        this.contourOut = new MatOfPoint();
+        this.blurred = new Mat();
+        this.hsv = new Mat();
+        this.colorLut = new ColorLut(0);
+        this.colorLutDenoised = new ColorLut(PreprocessStage.DENOISE_SIZE);
+        this.previewTarget = new Mat(BenchmarkFrames.HEIGHT, BenchmarkFrames.WIDTH, CvType.CV_8UC4,
+          ByteBuffer.allocateDirect(BenchmarkFrames.WIDTH * BenchmarkFrames.HEIGHT * 4));
+
+        this.noisyMorph = this.frames.nextDetected().morph.clone();
+        Mat noise = new Mat(this.noisyMorph.size(), CvType.CV_8UC1);
+        Core.setRNGSeed(1);
+        Core.randu(noise, 0, 256);
+        Imgproc.threshold(noise, noise, 252, 255, Imgproc.THRESH_BINARY);
+        Core.bitwise_or(this.noisyMorph, noise, this.noisyMorph);
+        noise.release();
+        this.noisyRoi = new Rect(0, 0, this.noisyMorph.cols(), this.noisyMorph.rows());
+
+        // leave a blurred and an HSV image in the workspace for the steps that start from them
+        this.preprocess.blur(this.frames.next().image, this.blurred);
+        this.preprocess.toHsv(this.blurred, this.hsv);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.preprocess.close();
+        this.detection.close();
+        this.componentDetection.close();
+        this.noisyMorph.release();
+        this.scratch.dispose();
+        this.contourOut.release();
+        this.colorLut.dispose();
+        this.colorLutDenoised.dispose();
+        this.previewTarget.release();
+        this.blurred.release();
+        this.hsv.release();
+        this.frames.dispose();
+    }
+
+    @Benchmark
+    public void blur20x20() {
+        this.preprocess.blur(this.frames.next().image, this.blurred);
+    }
+
+    @Benchmark
+    public void cvtColorBgr2Hsv() {
+        this.preprocess.toHsv(this.blurred, this.hsv);
+    }
+
+    @Benchmark
+    public void inRange() {
+        this.preprocess.threshold(ProcessingSettings.DEFAULTS, this.hsv, this.scratch.mask);
+    }
+
+    // replaces blur20x20 + cvtColorBgr2Hsv + inRange
+    @Benchmark
+    public void colorLut() {
+        this.colorLut.classify(ProcessingSettings.DEFAULTS, this.frames.next().image, this.scratch.mask);
+    }
+
+    @Benchmark
+    public void colorLutDenoised() {
+        this.colorLutDenoised.classify(ProcessingSettings.DEFAULTS, this.frames.next().image, this.scratch.mask);
+    }
+
+    @Benchmark
+    public boolean findContours() {
+        Frame frame = this.frames.next();
+        return this.detection.findContour(frame.morph, frame.roi, this.contourOut);
+    }
+
+    @Benchmark
+    public boolean findLargestComponent() {
+        Frame frame = this.frames.next();
+        return this.componentDetection.findLargestComponent(frame.morph, frame.roi, this.contourOut);
+    }
+
+    @Benchmark
+    public boolean findContoursNoisy() {
+        return this.detection.findContour(this.noisyMorph, this.noisyRoi, this.contourOut);
+    }
+
+    @Benchmark
+    public boolean findLargestComponentNoisy() {
+        return this.componentDetection.findLargestComponent(this.noisyMorph, this.noisyRoi, this.contourOut);
+    }
+
+    @Benchmark
+    public boolean findFingerTips() {
+        return this.detection.findFingerTips(this.frames.nextDetected().contour, this.scratch);
+    }
+
+    @Benchmark
+    public int reduceFingerTips() {
+        return this.detection.reduceFingerTips(this.frames.nextDetected());
+    }
+
+    @Benchmark
+    public void angleBetween(Blackhole blackhole) {
+        Frame frame = this.frames.nextDetected();
+        for (int i = 1; i + 1 < frame.defectCount; i++) {
+            int[] points = frame.defectPoints;
+            blackhole.consume(this.detection.angleBetween(points[i * 4], points[i * 4 + 1], points[(i - 1) * 4 + 2],
+              points[(i - 1) * 4 + 3], points[(i + 1) * 4 + 2], points[(i + 1) * 4 + 3]));
+        }
+    }
+
+    @Benchmark
+    public Object matToBufferedImage() {
+        return matToBufferedImage(this.frames.next().image);
+    }
+
+    @Benchmark
+    public void previewBgr2Bgra() {
+        Imgproc.cvtColor(this.frames.next().image, this.previewTarget, Imgproc.COLOR_BGR2BGRA);
+    }
+
+    // how the preview used to convert frames, measured against previewBgr2Bgra
+    private static BufferedImage matToBufferedImage(Mat original) {
+        // init
+        BufferedImage image = null;
+        int width = original.width(), height = original.height(), channels = original.channels();
+        byte[] sourcePixels = new byte[width * height * channels];
+        original.get(0, 0, sourcePixels);
+
+        if (original.channels() > 1) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        } else {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        }
+        final byte[] targetPixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        System.arraycopy(sourcePixels, 0, targetPixels, 0, sourcePixels.length);
+
+        return image;
+    }
+}
@@ -0,0 +1,145 @@
+package camouse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import org.opencv.core.Point;
+
+/**
+ * A named calibration: the HSV range and morphology settings, the hand's initial position with the
+ * frame size it was measured in, and the color lookup table for those settings. Each profile is one
+ * small binary file; loading reads it whole, so the table is used as stored instead of being
+ * rebuilt, and the tracker starts out calibrated. Nothing keeps the file open or mapped, so a loaded
+ * profile can be saved over.
+ */
+public class CalibrationProfile {
+    private static final int MAGIC = 0x43414d50;
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".profile";
+    // magic, version, 6 ranges, 2 morphology sizes, 2 points, frame size, table length
+    private static final int HEADER_SIZE = 4 + 4 + 6 * 8 + 2 * 4 + 4 * 8 + 2 * 4 + 4;
+
+    final String name;
+    final ProcessingSettings settings;
+    // initial finger positions, x -1 when unknown
+    final Point indexTip;
+    final Point thumbTip;
+    // size of the frames the positions were measured in
+    final int frameWidth;
+    final int frameHeight;
+    // color table for the settings, null if not stored
+    private final ByteBuffer colorTable;
+
+    public CalibrationProfile(String name, ProcessingSettings settings, Point indexTip, Point thumbTip,
+                              int frameWidth, int frameHeight, ByteBuffer colorTable) {
+        this.name = name;
+        this.settings = settings;
+        this.indexTip = indexTip;
+        this.thumbTip = thumbTip;
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+        this.colorTable = colorTable;
+    }
+
+    // where profiles are kept unless told otherwise
+    static Path defaultDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".camouse");
+    }
+
+    // a read-only view of the stored color table, null if there is none
+    ByteBuffer colorTable() {
+        return this.colorTable != null ? this.colorTable.asReadOnlyBuffer() : null;
+    }
+
+    // whether the profile holds a hand position to start from
+    boolean hasPosition() {
+        return this.indexTip.x >= 0 && this.frameWidth > 0;
+    }
+
+    /**
+     * @return the profile, or null if there is no profile with that name
+     */
+    public static CalibrationProfile load(Path directory, String name) throws IOException {
+        Path file = directory.resolve(name + EXTENSION);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        // a few hundred kilobytes at most; a mapping would hold the file until collected, and a mapped
+        // file cannot be replaced on Windows
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (data.remaining() < HEADER_SIZE || data.getInt() != MAGIC || data.getInt() != VERSION) {
+            throw new IOException("Not a calibration profile: " + file);
+        }
+        ProcessingSettings settings = new ProcessingSettings(data.getDouble(), data.getDouble(), data.getDouble(),
+          data.getDouble(), data.getDouble(), data.getDouble(), data.getInt(), data.getInt());
+        Point indexTip = new Point(data.getDouble(), data.getDouble());
+        Point thumbTip = new Point(data.getDouble(), data.getDouble());
+        int frameWidth = data.getInt();
+        int frameHeight = data.getInt();
+        int tableLength = data.getInt();
+        if (tableLength < 0 || tableLength > data.remaining()) {
+            throw new IOException("Truncated calibration profile: " + file);
+        }
+        ByteBuffer table = null;
+        if (tableLength > 0) {
+            table = data.slice();
+            table.limit(tableLength);
+        }
+        return new CalibrationProfile(name, settings, indexTip, thumbTip, frameWidth, frameHeight, table);
+    }
+
+    // write the profile, replacing any earlier one with the same name
+    public void save(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        int tableLength = this.colorTable != null ? this.colorTable.remaining() : 0;
+        ByteBuffer data = ByteBuffer.allocate(HEADER_SIZE + tableLength);
+        data.putInt(MAGIC).putInt(VERSION);
+        data.putDouble(this.settings.hueStart).putDouble(this.settings.hueEnd);
+        data.putDouble(this.settings.saturationStart).putDouble(this.settings.saturationEnd);
+        data.putDouble(this.settings.valueStart).putDouble(this.settings.valueEnd);
+        data.putInt(this.settings.erodeNum).putInt(this.settings.dilateNum);
+        data.putDouble(this.indexTip.x).putDouble(this.indexTip.y);
+        data.putDouble(this.thumbTip.x).putDouble(this.thumbTip.y);
+        data.putInt(this.frameWidth).putInt(this.frameHeight);
+        data.putInt(tableLength);
+        if (tableLength > 0) {
+            data.put(this.colorTable.duplicate());
+        }
+        data.flip();
+
+        // write next to the old file and swap, so a crash never leaves half a profile
+        Path file = directory.resolve(this.name + EXTENSION);
+        Path temporary = directory.resolve(this.name + EXTENSION + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * A profile for the current settings and calibrated position of a tracker, with the color table for the settings.
+     */
+    static CalibrationProfile of(String name, ProcessingSettings settings, HandTracker tracker) {
+        ColorLut lut = new ColorLut(0);
+        ByteBuffer table = lut.table(settings);
+        lut.dispose();
+        Point index = tracker.isCalibrated() ? tracker.getInitialPosition(HandTracker.INDEX_FINGER) : new Point(-1, -1);
+        Point thumb = tracker.isCalibrated() ? tracker.getInitialPosition(HandTracker.THUMB) : new Point(-1, -1);
+        return new CalibrationProfile(name, settings, index.clone(), thumb.clone(), tracker.getFrameWidth(),
+          tracker.getFrameHeight(), table);
+    }
+
+    @Override
+    public String toString() {
+        return "profile " + this.name;
+    }
+}
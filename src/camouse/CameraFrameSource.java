@@ -0,0 +1,108 @@
+package camouse;
+
+import org.opencv.core.Mat;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.Videoio;
+
+/**
+ * Frames from a webcam.
+ */
+public class CameraFrameSource implements FrameSource {
+    // what to ask for while idle
+    private static final int IDLE_WIDTH = 320;
+    private static final int IDLE_HEIGHT = 240;
+    private static final int IDLE_FPS = 5;
+
+    private final int cameraIndex;
+    // requested capture size, 0 for the driver default
+    private final int width;
+    private final int height;
+    // the OpenCV object that performs the video capture
+    private final VideoCapture capture = new VideoCapture();
+    // what the camera delivered before going idle, restored when a hand comes back
+    private double activeWidth;
+    private double activeHeight;
+    private double activeFps;
+
+    public CameraFrameSource(int cameraIndex) {
+        this(cameraIndex, 0, 0);
+    }
+
+    public CameraFrameSource(int cameraIndex, int width, int height) {
+        this.cameraIndex = cameraIndex;
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public boolean open() {
+        if (this.capture.isOpened()) {
+            return true;
+        }
+        if (!this.capture.open(this.cameraIndex)) {
+            return false;
+        }
+        if (this.width > 0 && this.height > 0) {
+            // the camera may pick the closest size it supports
+            this.capture.set(Videoio.CAP_PROP_FRAME_WIDTH, this.width);
+            this.capture.set(Videoio.CAP_PROP_FRAME_HEIGHT, this.height);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isOpened() {
+        return this.capture.isOpened();
+    }
+
+    @Override
+    public boolean read(Mat frame) {
+        return this.capture.read(frame) && !frame.empty();
+    }
+
+    @Override
+    public boolean skip() {
+        // grab() takes the frame out of the driver queue, only retrieve() would decode it
+        return this.capture.grab();
+    }
+
+    @Override
+    public void release() {
+        if (this.capture.isOpened()) {
+            // release the camera
+            this.capture.release();
+        }
+    }
+
+    @Override
+    public void setIdle(boolean idle) {
+        if (!this.capture.isOpened()) {
+            return;
+        }
+        if (idle) {
+            this.activeWidth = this.capture.get(Videoio.CAP_PROP_FRAME_WIDTH);
+            this.activeHeight = this.capture.get(Videoio.CAP_PROP_FRAME_HEIGHT);
+            this.activeFps = this.capture.get(Videoio.CAP_PROP_FPS);
+            // drivers that cannot do this keep their size and rate, the pipeline drops what it does not need
+            this.capture.set(Videoio.CAP_PROP_FRAME_WIDTH, IDLE_WIDTH);
+            this.capture.set(Videoio.CAP_PROP_FRAME_HEIGHT, IDLE_HEIGHT);
+            this.capture.set(Videoio.CAP_PROP_FPS, IDLE_FPS);
+        } else if (this.activeWidth > 0) {
+            this.capture.set(Videoio.CAP_PROP_FRAME_WIDTH, this.activeWidth);
+            this.capture.set(Videoio.CAP_PROP_FRAME_HEIGHT, this.activeHeight);
+            if (this.activeFps > 0) {
+                this.capture.set(Videoio.CAP_PROP_FPS, this.activeFps);
+            }
+        }
+    }
+
+    @Override
+    public boolean isLive() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "camera " + this.cameraIndex;
+    }
+}
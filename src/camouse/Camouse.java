@@ -1,5 +1,9 @@
 package camouse;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import javafx.application.Application;
 import javafx.event.EventHandler;
 import javafx.fxml.FXMLLoader;
@@ -7,19 +11,26 @@ import javafx.scene.Scene;
 import javafx.scene.layout.BorderPane;
 import javafx.stage.Stage;
 import javafx.stage.WindowEvent;
-import org.opencv.core.Core;
 
 public class Camouse extends Application
 {
+    // started by main, so natives, camera and Robot load while JavaFX starts
+    private static Startup startup;
+
     @Override
     public void start(Stage primaryStage)
     {
         try
         {
+            List<String> args = getParameters().getRaw();
+            if (startup == null) {
+                startup = Startup.begin(args, TrackerOptions.fromArgs(args));
+            }
             // load the FXML resource
             FXMLLoader loader = new FXMLLoader(getClass().getResource("camouse-ui.fxml"));
             // store the root element so that the controllers can use it
             BorderPane root = (BorderPane) loader.load();
+            startup.ready("ui");
             // set a whitesmoke background
             root.setStyle("-fx-background-color: whitesmoke;");
             // create and style a scene
@@ -34,6 +45,7 @@ public class Camouse extends Application
 
             // set the proper behavior on closing the application
             CamouseController controller = loader.getController();
+            controller.setStartup(startup);
             primaryStage.setOnCloseRequest((new EventHandler<WindowEvent>() {
                 public void handle(WindowEvent we)
                 {
@@ -47,11 +59,70 @@ public class Camouse extends Application
         }
     }
 
+    // --source=camera[:N]|file:<path>|synthetic, --camera=N, --resolution=WxH, --fast, --loop
+    static FrameSource frameSource(List<String> args)
+    {
+        return frameSources(args).get(0);
+    }
+
+    // one source per --source or --camera argument, in order; the other options apply to all of them
+    static List<FrameSource> frameSources(List<String> args)
+    {
+        List<String> specs = new ArrayList<>();
+        boolean fast = false;
+        boolean loop = false;
+        int width = 0, height = 0;
+        for (String arg : args) {
+            if (arg.startsWith("--source=")) {
+                specs.add(arg.substring("--source=".length()));
+            } else if (arg.startsWith("--camera=")) {
+                specs.add("camera:" + arg.substring("--camera=".length()));
+            } else if (arg.equals("--fast")) {
+                fast = true;
+            } else if (arg.equals("--loop")) {
+                loop = true;
+            } else if (arg.startsWith("--resolution=")) {
+                String[] size = arg.substring("--resolution=".length()).split("x");
+                if (size.length != 2) {
+                    throw new IllegalArgumentException("Resolution must be WIDTHxHEIGHT: " + arg);
+                }
+                width = Integer.parseInt(size[0]);
+                height = Integer.parseInt(size[1]);
+            }
+        }
+        if (specs.isEmpty()) {
+            specs.add("camera");
+        }
+        List<FrameSource> sources = new ArrayList<>();
+        for (String spec : specs) {
+            sources.add(FrameSource.fromSpec(spec, fast, loop, width, height));
+        }
+        return sources;
+    }
+
+    static FrameSource frameSource(String[] args)
+    {
+        return frameSource(Arrays.asList(args));
+    }
+
     public static void main(String[] args)
     {
-        // load the native OpenCV library
-        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+        // load the natives, open the sources, create the Robot and warm up in the background
+        List<String> argList = Arrays.asList(args);
+        startup = Startup.begin(argList, TrackerOptions.fromArgs(argList));
+
+        boolean headless = false;
+        for (String arg : args) {
+            if (arg.equals("--headless")) {
+                headless = true;
+            }
+        }
 
-        launch(args);
+        if (headless) {
+            // track without any UI, one hand per source
+            HeadlessCamouse.run(startup, startup.options());
+        } else {
+            launch(args);
+        }
     }
 }
@@ -1,49 +1,27 @@
 package camouse;
 
-import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferByte;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javafx.application.Platform;
-import javafx.embed.swing.SwingFXUtils;
 import org.opencv.core.*;
-import org.opencv.imgproc.Imgproc;
-import org.opencv.videoio.VideoCapture;
 
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.value.ObservableBooleanValue;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.Slider;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.stage.Stage;
+import javafx.stage.Window;
 
 public class CamouseController {
-    //constants
-    private static final int BLUR_SIZE = 20;
-    private static final double CONTOUR_APPROX_FACTOR = 0.1;
-    private static final double SMALLEST_AREA = 0;
-    private static final int THUMB = 0;
-    private static final int INDEX_FINGER = 1;
-    private static final float cameraX = 640;
-    private static final float cameraY = 460;
-
-    private long theTime;
-    private long timeElapsed;
-
-    //member vars
-    private Mat currentFrame;
-    List<Point> startPoints = new ArrayList<>();
-    List<Point> valleyPoints = new ArrayList<>();
-    List<Point> endPoints = new ArrayList<>();
-    List<Double> depths = new ArrayList<>();
-    private Point[] initialPosition = {new Point(-1, -1), new Point(-1, -1)};
-    private Point[] currentPosition = new Point[2];
+    // preview refresh rates, kept well below the tracking rate
+    private static final double ORIGINAL_PREVIEW_FPS = 15;
+    private static final double MASK_PREVIEW_FPS = 2;
 
     // FXML camera button
     @FXML
@@ -79,36 +57,72 @@ public class CamouseController {
     // FXML label to show the current values set with the sliders
     @FXML
     private Label hsvCurrentValues;
-
-    // a timer for acquiring the video stream
-    private ScheduledExecutorService timer;
-    // the OpenCV object that performs the video capture
-    private VideoCapture capture = new VideoCapture();
+    // FXML label with the live pipeline timings
+    @FXML
+    private Label statsLabel;
+
+    // the staged capture and processing pipeline
+    private FramePipeline pipeline;
+    private StatsReporter statsReporter;
+    // where the frames come from, the default webcam unless told otherwise
+    private FrameSource source;
+    private TrackerOptions options = new TrackerOptions();
+    // opens the source, creates the dispatcher and warms up in the background, null if there is none
+    private Startup startup;
     // a flag to change the button behavior
     private boolean cameraActive;
-    private TempMain tempMain;
+    // set when the window closes, so a startup finishing afterwards does not start tracking
+    private boolean closed;
+
+    private final HandTracker tracker = new HandTracker();
+    ScrollEventTest scroller;
+
+    // the slider values as an immutable snapshot, replaced on the FX thread when a slider moves
+    // and read by the pipeline without locking
+    private final AtomicReference<ProcessingSettings> settings = new AtomicReference<>();
+    // shows the pipeline output once per FX pulse
+    private UiPulse pulse;
 
     // property for object binding
     private ObjectProperty<String> hsvValuesProp;
-
-    public boolean isCalibrated = false;
+    private ObjectProperty<String> statsProp;
 
     /*
     PUBLIC API
      */
-    private boolean _isThumbExtended = false;
+    // the hand after the latest frame, consistent and safe to keep
+    public HandState getHandState() {
+        return tracker.getState();
+    }
+
+    // a new HandState per frame; slow subscribers get the latest one instead of a backlog
+    public Flow.Publisher<HandState> getHandStates() {
+        return tracker.getStates();
+    }
+
+    /**
+     * @deprecated read {@link #getHandState()} once instead, so the values belong to the same frame
+     */
+    @Deprecated
     public boolean isThumbExtended() {
-        return _isThumbExtended;
-        //return currentPosition[THUMB].x < 0;
+        return tracker.getState().isThumbExtended();
     }
 
+    /**
+     * @deprecated use {@link HandState#getX(int)} and {@link HandState#getY(int)} of {@link #getHandState()}
+     */
+    @Deprecated
     public Point getCurrentPosition(int fingerId) {
-        return currentPosition[fingerId];
+        return tracker.getState().getPosition(fingerId);
     }
 
+    /**
+     * @deprecated use {@link HandState#getDisplacementX(int)} and {@link HandState#getDisplacementY(int)} of
+     * {@link #getHandState()}
+     */
+    @Deprecated
     public Point getDisplacement(int fingerId) {
-        return new Point(currentPosition[fingerId].x - initialPosition[fingerId].x,
-          currentPosition[fingerId].y - initialPosition[fingerId].y);
+        return tracker.getState().getDisplacement(fingerId);
     }
     /*
     END OF PUBLIC API
@@ -118,17 +132,10 @@ public class CamouseController {
     private void calibrateInitial() {
         if (this.cameraActive) {
 
-            if(currentPosition[INDEX_FINGER] != null){
-                initialPosition[INDEX_FINGER] = currentPosition[INDEX_FINGER].clone();
-                if (isThumbExtended()) {
-                    initialPosition[THUMB] = currentPosition[THUMB].clone();
-                }
-                /*tempMain.init[0]= (float)(initialPosition[INDEX_FINGER].x);
-                tempMain.init[0]= (float)(float)(initialPosition[INDEX_FINGER].y);*/
-                tempMain = new TempMain((float) (initialPosition[INDEX_FINGER].x), (float) (initialPosition[INDEX_FINGER].y), cameraX, cameraY);
-                //System.out.println("INITIAL: " + initialPosition[INDEX_FINGER]);
-                isCalibrated = true;
-            }else{
+            if (tracker.calibrate()) {
+                // start from here next time
+                this.options.saveProfile(this.settings.get(), tracker);
+            } else {
                 System.err.println("ERROR! Nothing detected!! Please position the selected glove in front of the camera...");
             }
 
@@ -144,6 +151,8 @@ public class CamouseController {
         hsvValuesProp = new SimpleObjectProperty<>();
 
         this.hsvCurrentValues.textProperty().bind(hsvValuesProp);
+        statsProp = new SimpleObjectProperty<>();
+        this.statsLabel.textProperty().bind(statsProp);
 
         // set a fixed width for all the image to show and preserve image ratio
         this.imageViewProperties(this.originalImageView, 400);
@@ -152,30 +161,39 @@ public class CamouseController {
 
 
         if (!this.cameraActive) {
-            // start the video capture
-            this.capture.open(0);
-
-            // is the video stream available?
-            if (this.capture.isOpened()) {
-                this.cameraActive = true;
-
-                // grab a frame every 33 ms (30 frames/sec)
-                Runnable frameGrabber = () -> {
-                    // effectively grab and process a single frame
-                    this.currentFrame = grabFrame();
-                    // convert and show the frame
-                    Image imageToShow = CamouseController.mat2Image(this.currentFrame);
-                    updateImageView(originalImageView, imageToShow);
-                };
-                this.timer = Executors.newSingleThreadScheduledExecutor();
-                this.timer.scheduleAtFixedRate(frameGrabber, 0, 33, TimeUnit.MILLISECONDS);
-
-                // update the button content
-                this.cameraButton.setText("Stop Camera");
-            } else {
-                // log the error
-                System.err.println("Failed to open the camera connection...");
+            if (this.startup == null) {
+                if (this.scroller == null) {
+                    this.scroller = new ScrollEventTest();
+                }
+                if (this.source == null) {
+                    this.source = new CameraFrameSource(0);
+                }
+                startTracking();
+                return;
             }
+            // normally ready long before the first click; never wait for it on the FX thread
+            this.cameraButton.setDisable(true);
+            this.startup.whenReady().whenCompleteAsync((ignored, error) -> {
+                this.cameraButton.setDisable(false);
+                if (this.closed) {
+                    return;
+                }
+                if (error != null) {
+                    System.err.println("Failed to start tracking: " + Startup.cause(error));
+                    return;
+                }
+                if (this.scroller == null) {
+                    this.scroller = this.startup.scroller();
+                }
+                if (this.source == null) {
+                    this.source = this.startup.sources().get(0);
+                }
+                releaseOtherSources();
+                startTracking();
+            }, Platform::runLater).exceptionally(error -> {
+                System.err.println("Failed to start tracking: " + Startup.cause(error));
+                return null;
+            });
         } else {
             // the camera is not active at this point
             this.cameraActive = false;
@@ -185,327 +203,77 @@ public class CamouseController {
             // stop the timer
             this.stopAcquisition();
         }
-
-        //detect click
-        //i(!isThumbExtended() && !isClicking){
-        //pointer
-        //isClicking = true;
-        //System.out.println("POINTING");
-        //theTime = System.nanoTime();
-        //
     }
 
-
-    private Mat grabFrame() {
-        this.currentFrame = new Mat();
-        // check if the capture is open
-        if (this.capture.isOpened()) {
-            try {
-                // read the current this.currentFrame
-                this.capture.read(this.currentFrame);
-//                System.out.print("Resolution: " + this.currentFrame.width() + "," + this.currentFrame.height());
-                // if the this.currentFrame is not empty, process it
-                if (!this.currentFrame.empty()) {
-                    // init
-                    Mat blurredImage = new Mat();
-                    Mat hsvImage = new Mat();
-                    Mat mask = new Mat();
-                    Mat morphOutput = new Mat();
-                    // remove some noise
-
-                    Imgproc.blur(this.currentFrame, blurredImage, new Size(20, 20));
-
-                    // convert the this.currentFrame to HSV
-                    Imgproc.cvtColor(blurredImage, hsvImage, Imgproc.COLOR_BGR2HSV);
-                    //hsvImage = blurredImage.clone();
-                    // get thresholding values from the UI
-                    // remember: H ranges 0-180, S and V range 0-255
-                    Scalar minValues = new Scalar(this.hueStart.getValue(), this.saturationStart.getValue(),
-                      this.valueStart.getValue());
-                    Scalar maxValues = new Scalar(this.hueEnd.getValue(), this.saturationEnd.getValue(),
-                      this.valueEnd.getValue());
-
-//                    System.out.println("MIN" + minValues);
-                    // show the current selected HSV range
-                    String valuesToPrint = "Hue range: " + minValues.val[0] + "-" + maxValues.val[0]
-                      + "\tSaturation range: " + minValues.val[1] + "-" + maxValues.val[1] + "\tValue range: "
-                      + minValues.val[2] + "-" + maxValues.val[2];
-                    CamouseController.onFXThread(this.hsvValuesProp, valuesToPrint);
-                    // threshold HSV image to select tennis balls
-                    Core.inRange(hsvImage, minValues, maxValues, mask);
-                    // show the partial output
-                    this.updateImageView(this.maskImageView, CamouseController.mat2Image(mask));
-
-                    // morphological operators
-                    // dilate with large element, erode with small ones
-
-                    Mat dilateElement = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(24, 24));
-                    Mat erodeElement = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(12, 12));
-
-
-                    Imgproc.erode(mask, morphOutput, erodeElement);
-                    for (int i = 1; i < Math.round(erodeNum.getValue()); i++) {
-                        Imgproc.erode(morphOutput, morphOutput, erodeElement);
-                    }
-
-                    Imgproc.dilate(morphOutput, morphOutput, dilateElement);
-                    for (int i = 1; i < Math.round(dilateNum.getValue()); i++) {
-                        Imgproc.dilate(morphOutput, morphOutput, dilateElement);
-                    }
-
-                    // show the partial output
-                    this.updateImageView(this.morphImageView, CamouseController.mat2Image(morphOutput));
-
-                    // find the tennis ball(s) contours and show them
-                    this.currentFrame = this.findContourAndDraw(this.currentFrame, morphOutput);
-
-                }
-
-            } catch (Exception e) {
-                // log the (full) error
-                System.err.print("Exception during the image elaboration...");
-                e.printStackTrace();
-            }
+    // whether the window is on screen; the previews stop rendering while it is minimized
+    private ObservableBooleanValue windowShown() {
+        Window window = this.originalImageView.getScene().getWindow();
+        if (window instanceof Stage) {
+            Stage stage = (Stage) window;
+            return stage.showingProperty().and(stage.iconifiedProperty().not());
         }
-
-        return this.currentFrame;
+        return window.showingProperty();
     }
 
-    private Mat findContourAndDraw(Mat frame, Mat maskedImage) {
-        // init
-        List<MatOfPoint> contours = new ArrayList<>();
-        Mat hierarchy = new Mat();
-
-        // find contours
-        Imgproc.findContours(maskedImage, contours, hierarchy, Imgproc.RETR_CCOMP, Imgproc.CHAIN_APPROX_SIMPLE);
-        double maxArea = SMALLEST_AREA;
-        int biggestContourIdx = -1;
-        // if any contour exist...
-
-        if (hierarchy.size().height > 0 && hierarchy.size().width > 0) {
-            // for each contour, display it in blue
-            for (int idx = 0; idx >= 0; idx = (int) hierarchy.get(0, idx)[0]) {
-                double area = Imgproc.boundingRect(contours.get(idx)).area();
-
-                if (area > maxArea) {
-                    maxArea = area;
-                    biggestContourIdx = idx;
-                }
-            }
+    // FX thread: open the source and start the pipeline, once the sources, the dispatcher and the warm-up are ready
+    private void startTracking() {
+        // start the video capture
+        if (!this.source.isOpened()) {
+            this.source.open();
         }
-        if (biggestContourIdx > -1) {
-            Imgproc.drawContours(frame, contours, biggestContourIdx, new Scalar(250, 0, 0), 1);
-            findFingerTips(contours.get(biggestContourIdx), frame);
-        }
-
-        return frame;
-    }
 
-    private void findFingerTips(MatOfPoint contour, Mat frame) {
-//        maybe use approx contour;
-        MatOfPoint2f contourFloat = new MatOfPoint2f(contour.toArray());
-        MatOfPoint2f approxContour = new MatOfPoint2f();
-        double epsilon = 0.05 * Imgproc.arcLength(contourFloat, false);
-        Imgproc.approxPolyDP(contourFloat, approxContour, epsilon, true);
-        contour = new MatOfPoint(approxContour.toArray());
-
-
-        MatOfInt convexHullIndices = new MatOfInt();
-        MatOfInt4 defects = new MatOfInt4();
-        Imgproc.convexHull(contour, convexHullIndices, false);
-
-        MatOfPoint convexHullPoints = new MatOfPoint();
-        convexHullPoints.create((int) convexHullIndices.size().height, 1, CvType.CV_32SC2);
-
-        double topMostPointY = Double.POSITIVE_INFINITY;
-        int topMostPointIndex = -1;
-        for (int i = 0; i < convexHullIndices.size().height; i++) {
-            int index = (int) convexHullIndices.get(i, 0)[0];
-            double[] point = new double[]{
-              contour.get(index, 0)[0], contour.get(index, 0)[1]
-            };
-            if (point[1] < topMostPointY) {
-                topMostPointY = point[1];
-                topMostPointIndex = i;
+        // is the video stream available?
+        if (this.source.isOpened()) {
+            this.cameraActive = true;
+
+            // capture -> preprocess -> detection -> gesture/input -> preview
+            this.pulse = new UiPulse(this.hsvValuesProp, this.statsProp);
+            List<FrameStage> stages = this.options.trackingStages(this.settings::get,
+              this.options.gestureStage(this.tracker, this.scroller, false));
+            stages.add(new PreviewStage(this.originalImageView, this.maskImageView, this.morphImageView,
+              windowShown(), this.pulse, ORIGINAL_PREVIEW_FPS, MASK_PREVIEW_FPS));
+            this.pipeline = new FramePipeline(this.source, stages);
+            this.pipeline.setIdleAfter(this.options.idleAfterMs);
+            if (this.startup != null) {
+                this.pipeline.setFirstFrameListener(this.startup);
             }
-            convexHullPoints.put(i, 0, point);
-        }
-        Point topMostPoint = new Point(convexHullPoints.get(topMostPointIndex, 0));
-        Imgproc.circle(frame, topMostPoint, 10, new Scalar(0, 255, 0), 3);
-        _isThumbExtended = false;
-        currentPosition[THUMB] = new Point(-1, -1);
-        currentPosition[INDEX_FINGER] = topMostPoint.clone();
-
-        //draw hull
-        ArrayList<MatOfPoint> hullList = new ArrayList<>();
-        hullList.add(0, convexHullPoints);
-        Imgproc.drawContours(frame, hullList, 0, new Scalar(0, 255, 0), 3);
-
-        Imgproc.convexityDefects(contour, convexHullIndices, defects);
-        startPoints.clear();
-        valleyPoints.clear();
-        depths.clear();
-        long numDefects = defects.total();
-        float MIN_FINGER_DEPTH = 90;
-
-//        System.out.println("DEFECT: " + defects.total());
-        for (int i = 0; i < defects.total(); i++) {
-            double[] defectStartCoords = contour.get((int) Math.round(defects.get(i, 0)[0]), 0);
-            double[] defectEndCoords = contour.get((int) Math.round(defects.get(i, 0)[1]), 0);
-            double[] valleyCoods = contour.get((int) Math.round(defects.get(i, 0)[2]), 0);
-            Point defectStartPoint = new Point(defectStartCoords);
-            Point defectEndPoint = new Point(defectEndCoords);
-            Point valleyPoint = new Point(valleyCoods);
-
-            double depth = defects.get(i, 0)[3] / 256;
-
-            Imgproc.circle(frame, defectStartPoint, 10, new Scalar(0, 0, 255), 3);
-            _isThumbExtended = true;
-            currentPosition[THUMB] = defectStartPoint.clone();
-            //Imgproc.circle(frame, defectEndPoint, 10, new Scalar(0, 255, 0), 3);
-//            if (depth < MIN_FINGER_DEPTH) {
-//                continue;
-//            }
-            startPoints.add(defectStartPoint);
-            valleyPoints.add(valleyPoint);
-            depths.add(depth);
-        }
-
-        if (isCalibrated) {
-            scroller.init((float) (currentPosition[INDEX_FINGER].x), (float) (currentPosition[INDEX_FINGER].y));
-//            tempMain.update((float) (currentPosition[INDEX_FINGER].x), (float) (currentPosition[INDEX_FINGER].y));
-////
-//            ScrollEventTest scrollTest = new ScrollEventTest((float) (initialPosition[INDEX_FINGER].x), (float) (initialPosition[INDEX_FINGER].y));
-//            float[] diff = scale();
-
-              scroller.mouseMovement((float)getDisplacement(INDEX_FINGER).x, (float)getDisplacement(INDEX_FINGER).y);
-
-//            if (!isThumbExtended()) {
-                cases();
-//            }
+            this.pipeline.start();
+            this.pulse.start();
+            this.statsReporter = new StatsReporter(this.pipeline.getStats(),
+              this.pulse::showStats, this.options.statsFile);
+            this.statsReporter.start();
+
+            // update the button content
+            this.cameraButton.setText("Stop Camera");
+        } else {
+            // log the error
+            System.err.println("Failed to open the camera connection...");
         }
-        reduceFingerTips(frame);
     }
 
-    ScrollEventTest scroller = new ScrollEventTest();
-
-    private boolean isClicking = false;
-    private boolean isDragging = false;
-    long clickStart;
-    long clickEnd;
-    long clickElapsed;
-
-
-    boolean mousePress = false;
-    private void cases() {
-
-        if(!isThumbExtended() && !mousePress){
-            mousePress = true;
-            clickStart = System.currentTimeMillis();
-        }
-        if(!isThumbExtended() && mousePress){
-            clickEnd = System.currentTimeMillis();
-        }
-        if(isThumbExtended() &&  mousePress){
-            mousePress = false;
-            clickElapsed = clickEnd - clickStart;
-            if(clickElapsed > 2000){
-                System.out.println("Right Click");
-                scroller.rightClick();
-            }
-            else if(clickElapsed > 200){
-                System.out.println("Left Click");
-                scroller.singleClick();
-            }
+    @FXML
+    private void initialize() {
+        // publish a new snapshot whenever a slider moves
+        for (Slider slider : List.of(this.hueStart, this.hueEnd, this.saturationStart, this.saturationEnd,
+          this.valueStart, this.valueEnd, this.erodeNum, this.dilateNum)) {
+            slider.valueProperty().addListener((observable, oldValue, newValue) -> publishSettings());
         }
-        /*if(isThumbExtended() && !mousePress){
-
-        }*/
-
-//
-//        System.out.println("Thumb extended:" + isThumbExtended());
-//        if (!isThumbExtended() && !isClicking) {
-//            isClicking = true;
-//            clickStart = System.currentTimeMillis();
-//            return;
-//        }
-//
-//        clickElapsed = System.currentTimeMillis() - clickStart;
-//        System.out.println("elapsed " + clickElapsed );
-//        if (clickElapsed > 4000 && !isThumbExtended() && !isDragging) {
-//            isDragging = true;
-//            System.out.println("Drag Start");
-//            return;
-//        }
-//
-//        if (isThumbExtended()) {
-//            if (isDragging) {
-//                isDragging = false;
-//                isClicking = false;
-//
-//                System.out.println("Drag End");
-//                return;
-//            }
-//            if (clickElapsed > 2000) {
-//                System.out.println("Right Click");
-//            } else if (clickElapsed > 500) {
-//                System.out.println("Left Click");
-//            }
-//            isClicking = false;
-//            return;
-//        }
-//
-//        isClicking = false;
-    }
-
-
-    private float[] scale() {
-        float[] diff = new float[2];
-        float iX = (float) initialPosition[INDEX_FINGER].x;
-        float iY = (float) initialPosition[INDEX_FINGER].y;
-        float cX = (float) currentPosition[INDEX_FINGER].x;
-        float cY = (float) currentPosition[INDEX_FINGER].y;
-
-        //float diffX = (float)(initialPosition[INDEX_FINGER].x)-(float)(currentPosition[INDEX_FINGER].x);
-        //float diffY =(float)(initialPosition[INDEX_FINGER].y)-(float)(currentPosition[INDEX_FINGER].y);
-
-        diff[0] = (cX - iX) * tempMain.scale[0];
-        diff[1] = (cY - iY) * tempMain.scale[1];
-
-        return diff;
+        publishSettings();
     }
 
-    private void reduceFingerTips(Mat frame) {
-        ArrayList<Point> fingerPoints = new ArrayList<>();
-        float MIN_FINGER_DEPTH = 10;
-        float MAX_FINGER_ANGLE = 60;
-        int numOfPoints = startPoints.size();
-        for (int i = 0; i < numOfPoints; i++) {
-//            System.out.println("depth " + i + ": " + depths.get(i));
-            if (depths.get(i) < MIN_FINGER_DEPTH) continue;
-
-            int prevIndex = (i == 0) ? (numOfPoints - 1) : (i - 1);
-            int nextIndex = (i == numOfPoints - 1) ? 0 : (i + 1);
-            int angle = angleBetween(startPoints.get(i), valleyPoints.get(prevIndex), valleyPoints.get(nextIndex));
-//            System.out.println("angle " + i + ": " + angle);
-
-            if (angle > MAX_FINGER_ANGLE) continue;
-
-            fingerPoints.add(startPoints.get(i));
-//            Imgproc.circle(frame, startPoints.get(i), 10, new Scalar(0, 255, 0), 2);
-
+    // FX thread: snapshot the thresholding values, keeping the last snapshot while nothing changed
+    private void publishSettings() {
+        double hs = this.hueStart.getValue(), he = this.hueEnd.getValue();
+        double ss = this.saturationStart.getValue(), se = this.saturationEnd.getValue();
+        double vs = this.valueStart.getValue(), ve = this.valueEnd.getValue();
+        int erode = (int) Math.round(this.erodeNum.getValue());
+        int dilate = (int) Math.round(this.dilateNum.getValue());
+        ProcessingSettings last = this.settings.get();
+        if (last == null || !last.sameAs(hs, he, ss, se, vs, ve, erode, dilate)) {
+            this.settings.set(new ProcessingSettings(hs, he, ss, se, vs, ve, erode, dilate));
         }
     }
 
-
-    private int angleBetween(Point tip, Point next, Point prev) {
-        return Math.abs((int) Math.round(
-          Math.toDegrees(
-            Math.atan2(next.x - tip.x, next.y - tip.y) -
-              Math.atan2(prev.x - tip.x, prev.y - tip.y))));
-    }
-
-
     private void imageViewProperties(ImageView image, int dimension) {
         // set a fixed width for the given ImageView
         image.setFitWidth(dimension);
@@ -514,64 +282,79 @@ public class CamouseController {
     }
 
     private void stopAcquisition() {
-        if (this.timer != null && !this.timer.isShutdown()) {
-            try {
-                // stop the timer
-                this.timer.shutdown();
-                this.timer.awaitTermination(33, TimeUnit.MILLISECONDS);
-            } catch (InterruptedException e) {
-                // log any exception
-                System.err.println("Exception in stopping the frame capture, trying to release the camera now... " + e);
-            }
+        if (this.statsReporter != null) {
+            this.statsReporter.stop();
+            this.statsReporter = null;
+        }
+        if (this.pipeline != null) {
+            // stop the capture and all stage workers
+            this.pipeline.stop();
+            this.pipeline = null;
+        }
+        if (this.pulse != null) {
+            this.pulse.stop();
+            this.pulse = null;
         }
 
-        if (this.capture.isOpened()) {
-            // release the camera
-            this.capture.release();
+        if (this.source != null) {
+            this.source.release();
         }
     }
 
-    private void updateImageView(ImageView view, Image image) {
-        CamouseController.onFXThread(view.imageProperty(), image);
-    }
 
+    // the UI tracks one source; release the others the startup opened, e.g. a second camera
+    private void releaseOtherSources() {
+        for (FrameSource other : this.startup.sources()) {
+            if (other != this.source) {
+                other.release();
+            }
+        }
+    }
 
-    protected void setClosed() {
-        this.stopAcquisition();
+    protected void setFrameSource(FrameSource source) {
+        this.source = source;
     }
 
+    protected void setStartup(Startup startup) {
+        this.startup = startup;
+        setOptions(startup.options());
+    }
 
-    public static Image mat2Image(Mat frame) {
-        try {
-            return SwingFXUtils.toFXImage(matToBufferedImage(frame), null);
-        } catch (Exception e) {
-            System.err.println("Cannot convert the Mat obejct: " + e);
-            return null;
+    protected void setOptions(TrackerOptions options) {
+        this.options = options;
+        CalibrationProfile profile = options.profile();
+        if (profile != null) {
+            applyProfile(profile);
         }
     }
 
-    public static <T> void onFXThread(final ObjectProperty<T> property, final T value) {
-        Platform.runLater(() -> {
-            property.set(value);
-        });
+    // move the sliders to the saved settings and start out calibrated if the profile has a position
+    private void applyProfile(CalibrationProfile profile) {
+        ProcessingSettings settings = profile.settings;
+        this.hueStart.setValue(settings.hueStart);
+        this.hueEnd.setValue(settings.hueEnd);
+        this.saturationStart.setValue(settings.saturationStart);
+        this.saturationEnd.setValue(settings.saturationEnd);
+        this.valueStart.setValue(settings.valueStart);
+        this.valueEnd.setValue(settings.valueEnd);
+        this.erodeNum.setValue(settings.erodeNum);
+        this.dilateNum.setValue(settings.dilateNum);
+        // the preset color tables belong to this instance
+        this.settings.set(settings);
+        this.tracker.calibrate(profile);
     }
 
-    private static BufferedImage matToBufferedImage(Mat original) {
-        // init
-        BufferedImage image = null;
-        int width = original.width(), height = original.height(), channels = original.channels();
-        byte[] sourcePixels = new byte[width * height * channels];
-        original.get(0, 0, sourcePixels);
-
-        if (original.channels() > 1) {
-            image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
-        } else {
-            image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+    protected void setClosed() {
+        this.closed = true;
+        this.stopAcquisition();
+        if (this.startup != null) {
+            // also when the camera was never started, or the startup is still opening them
+            this.startup.whenReady().thenRun(this::releaseOtherSources);
+        }
+        this.tracker.getStates().close();
+        if (this.scroller != null) {
+            this.scroller.close();
         }
-        final byte[] targetPixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
-        System.arraycopy(sourcePixels, 0, targetPixels, 0, sourcePixels.length);
-
-        return image;
     }
 
 }
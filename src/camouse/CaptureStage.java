@@ -0,0 +1,33 @@
+package camouse;
+
+/**
+ * First stage of the pipeline: reads a frame from the frame source into a pooled frame and stamps it.
+ */
+public class CaptureStage {
+    private final FrameSource source;
+    private final FramePool pool;
+
+    public CaptureStage(FrameSource source, FramePool pool) {
+        this.source = source;
+        this.pool = pool;
+    }
+
+    // returns null if no frame could be read or no pooled frame is free
+    public Frame capture() {
+        if (!this.source.isOpened()) {
+            return null;
+        }
+        Frame frame = this.pool.acquire();
+        if (frame == null) {
+            return null;
+        }
+        // reading reuses the frame's buffer as long as the resolution does not change
+        boolean read = this.source.read(frame.image);
+        frame.captureNanos = System.nanoTime();
+        if (!read) {
+            frame.release();
+            return null;
+        }
+        return frame;
+    }
+}
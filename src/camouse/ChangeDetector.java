@@ -0,0 +1,69 @@
+package camouse;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Tells whether a frame differs enough from the last fully processed one to be worth segmenting.
+ * Both are shrunk to a small grey thumbnail, which averages out sensor noise, and the frame counts
+ * as changed when any cell moved by more than a few grey levels. Comparing against the last
+ * processed frame rather than the previous one means slow drift still adds up to a change.
+ * Every few frames one is processed regardless, so a skipped result never stays stale for long.
+ */
+public class ChangeDetector {
+    private static final Size THUMBNAIL_SIZE = new Size(80, 60);
+    // grey levels a cell must change by
+    private static final double CELL_THRESHOLD = 8;
+    // process at least one frame out of this many
+    private static final int MAX_SKIPPED = 15;
+
+    private final Mat small = new Mat();
+    private final Mat thumbnail = new Mat(THUMBNAIL_SIZE, CvType.CV_8UC1);
+    private final Mat reference = new Mat(THUMBNAIL_SIZE, CvType.CV_8UC1);
+    private final Mat difference = new Mat();
+    private boolean hasReference;
+    // a new capture size, e.g. when entering or leaving idle mode, always counts as a change
+    private int width;
+    private int height;
+    private int skipped;
+
+    /**
+     * @return true if the image should be processed; it then becomes the new reference
+     */
+    public boolean changed(Mat image) {
+        if (image.cols() != this.width || image.rows() != this.height) {
+            this.width = image.cols();
+            this.height = image.rows();
+            this.hasReference = false;
+        }
+        Imgproc.resize(image, this.small, THUMBNAIL_SIZE, 0, 0, Imgproc.INTER_AREA);
+        Imgproc.cvtColor(this.small, this.thumbnail, Imgproc.COLOR_BGR2GRAY);
+        if (this.hasReference && this.skipped + 1 < MAX_SKIPPED) {
+            Core.absdiff(this.thumbnail, this.reference, this.difference);
+            Imgproc.threshold(this.difference, this.difference, CELL_THRESHOLD, 255, Imgproc.THRESH_BINARY);
+            if (Core.countNonZero(this.difference) == 0) {
+                this.skipped++;
+                return false;
+            }
+        }
+        this.thumbnail.copyTo(this.reference);
+        this.hasReference = true;
+        this.skipped = 0;
+        return true;
+    }
+
+    // process the next frame whatever it looks like
+    public void reset() {
+        this.hasReference = false;
+    }
+
+    public void dispose() {
+        this.small.release();
+        this.thumbnail.release();
+        this.reference.release();
+        this.difference.release();
+    }
+}
@@ -0,0 +1,125 @@
+package camouse;
+
+import java.nio.ByteBuffer;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Classifies BGR pixels as glove or background with a lookup table, in a single pass over the
+ * camera bytes. The table holds the HSV threshold result for every quantized BGR color and is
+ * only rebuilt when a new settings snapshot arrives, i.e. when a slider moved. Instead of blurring
+ * the color image, the mask can be cleaned up afterwards with a majority vote over a small box,
+ * which removes speckles like a median filter at a fraction of the cost.
+ * A table stored in a calibration profile can be preset, so the first frame does not pay for the build.
+ */
+public class ColorLut {
+    // 6 bits per channel: 256k entries, colors within 4 levels of each other share an entry
+    private static final int BITS = 6;
+    private static final int SHIFT = 8 - BITS;
+    private static final int LEVELS = 1 << BITS;
+    private static final int SIZE = LEVELS * LEVELS * LEVELS;
+    // the table is built from a square image of all cell colors
+    private static final int SIDE = 1 << (3 * BITS / 2);
+
+    private final byte[] table = new byte[SIZE];
+    // box size for the majority vote, 0 to leave the mask as it is
+    private final int denoiseSize;
+    private final Size denoiseBox;
+    private ProcessingSettings builtFor;
+
+    // workspace
+    private Mat cells;
+    private final Mat cellsHsv = new Mat();
+    private final Mat cellsMask = new Mat();
+    private byte[] pixelData = new byte[0];
+    private byte[] maskData = new byte[0];
+
+    public ColorLut(int denoiseSize) {
+        this.denoiseSize = denoiseSize > 1 ? denoiseSize : 0;
+        this.denoiseBox = new Size(denoiseSize, denoiseSize);
+    }
+
+    /**
+     * Writes 255 into the mask where the color is within the settings' HSV range and 0 elsewhere.
+     * Works on submats, the mask must already have the size of the image.
+     */
+    public void classify(ProcessingSettings settings, Mat bgr, Mat mask) {
+        if (settings != this.builtFor) {
+            build(settings);
+        }
+
+        int rows = bgr.rows(), cols = bgr.cols();
+        int pixels = rows * cols;
+        if (this.pixelData.length < pixels * 3) {
+            this.pixelData = new byte[pixels * 3];
+            this.maskData = new byte[pixels];
+        }
+        bgr.get(0, 0, this.pixelData);
+
+        byte[] table = this.table, pixelData = this.pixelData, maskData = this.maskData;
+        for (int i = 0, p = 0; i < pixels; i++, p += 3) {
+            int b = (pixelData[p] & 0xff) >>> SHIFT;
+            int g = (pixelData[p + 1] & 0xff) >>> SHIFT;
+            int r = (pixelData[p + 2] & 0xff) >>> SHIFT;
+            maskData[i] = table[(b << (2 * BITS)) | (g << BITS) | r];
+        }
+        mask.put(0, 0, maskData, 0, pixels);
+
+        if (this.denoiseSize > 0) {
+            // a pixel stays set when most of its neighbours are set
+            Imgproc.blur(mask, mask, this.denoiseBox);
+            Imgproc.threshold(mask, mask, 127, 255, Imgproc.THRESH_BINARY);
+        }
+    }
+
+    /**
+     * Use a table saved earlier for these settings instead of building it. Ignored when the table
+     * has the wrong size, e.g. from a build with a different quantization.
+     */
+    public void preset(ProcessingSettings settings, ByteBuffer table) {
+        if (table == null || table.remaining() != SIZE) {
+            return;
+        }
+        table.duplicate().get(this.table);
+        this.builtFor = settings;
+    }
+
+    // a copy of the table for the settings, to be stored with them
+    public ByteBuffer table(ProcessingSettings settings) {
+        if (settings != this.builtFor) {
+            build(settings);
+        }
+        return ByteBuffer.wrap(this.table.clone());
+    }
+
+    // threshold the center color of every cell with the same OpenCV calls as the HSV path
+    private void build(ProcessingSettings settings) {
+        if (this.cells == null) {
+            byte[] colors = new byte[SIZE * 3];
+            int half = 1 << SHIFT >> 1;
+            for (int index = 0; index < SIZE; index++) {
+                colors[index * 3] = (byte) (((index >>> (2 * BITS)) << SHIFT) + half);
+                colors[index * 3 + 1] = (byte) ((((index >>> BITS) & (LEVELS - 1)) << SHIFT) + half);
+                colors[index * 3 + 2] = (byte) (((index & (LEVELS - 1)) << SHIFT) + half);
+            }
+            this.cells = new Mat(SIDE, SIZE / SIDE, CvType.CV_8UC3);
+            this.cells.put(0, 0, colors);
+            Imgproc.cvtColor(this.cells, this.cellsHsv, Imgproc.COLOR_BGR2HSV);
+        }
+        Core.inRange(this.cellsHsv, settings.minValues(), settings.maxValues(), this.cellsMask);
+        this.cellsMask.get(0, 0, this.table);
+        this.builtFor = settings;
+    }
+
+    public void dispose() {
+        if (this.cells != null) {
+            this.cells.release();
+        }
+        this.cellsHsv.release();
+        this.cellsMask.release();
+    }
+}
@@ -0,0 +1,423 @@
+package camouse;
+
+import java.util.Arrays;
+
+/**
+ * The contour geometry used for finger tip detection, on interleaved x, y int arrays instead of Mats:
+ * arc length, Douglas-Peucker approximation, convex hull and convexity defects.
+ * Each one follows the OpenCV implementation step by step (including its tie-breaking and the order
+ * of the results), so the output is the same as Imgproc.arcLength, approxPolyDP, convexHull and
+ * convexityDefects, without a JNI call or an allocation per frame.
+ * All coordinates are integers, so distances are compared exactly in long arithmetic where OpenCV
+ * uses doubles; the results are the same. Coordinates must be non-negative and below 2^21.
+ * An instance reuses its scratch buffers, so it must not be shared between threads.
+ */
+public class ContourGeometry {
+    private static final int COORDINATE_BITS = 21;
+
+    // approximation: pending ranges as start, end pairs
+    private int[] slices = new int[0];
+    // hull: points sorted by x, then y, then index, packed into longs
+    private long[] sorted = new long[0];
+    private int[] order = new int[0];
+    private int[] stack = new int[0];
+
+    // length of the polyline through count points, as Imgproc.arcLength computes it in single precision
+    public static double arcLength(int[] points, int count, boolean closed) {
+        if (count <= 1) {
+            return 0;
+        }
+        int last = closed ? count - 1 : 0;
+        float prevX = points[last * 2];
+        float prevY = points[last * 2 + 1];
+        double perimeter = 0;
+        for (int i = 0; i < count; i++) {
+            float x = points[i * 2];
+            float y = points[i * 2 + 1];
+            float dx = x - prevX, dy = y - prevY;
+            perimeter += (float) Math.sqrt(dx * dx + dy * dy);
+            prevX = x;
+            prevY = y;
+        }
+        return perimeter;
+    }
+
+    /**
+     * Douglas-Peucker approximation of a closed contour, as Imgproc.approxPolyDP(closed = true).
+     *
+     * @param out room for count points
+     * @return the number of points written to out
+     */
+    public int approxPolyDP(int[] points, int count, double epsilon, int[] out) {
+        if (count == 0) {
+            return 0;
+        }
+        this.slices = ensureCapacity(this.slices, count * 2 + 4);
+        int top = 0;
+        int newCount = 0;
+        double eps = epsilon * epsilon;
+
+        // 1. find approximately the two farthest points of the contour
+        int pos = 0;
+        int rightStart = 0;
+        int startX = 0, startY = 0;
+        boolean withinEps = false;
+        for (int iter = 0; iter < 3; iter++) {
+            pos = (pos + rightStart) % count;
+            startX = points[pos * 2];
+            startY = points[pos * 2 + 1];
+            // the points after the start, in contour order, without wrapping around inside the loops
+            long maxDist = 0;
+            int farthest = 0;
+            for (int i = pos + 1; i < count + pos; i++) {
+                int index = i < count ? i : i - count;
+                long dx = points[index * 2] - startX;
+                long dy = points[index * 2 + 1] - startY;
+                long dist = dx * dx + dy * dy;
+                if (dist > maxDist) {
+                    maxDist = dist;
+                    farthest = i - pos;
+                }
+            }
+            if (farthest > 0) {
+                rightStart = farthest;
+            }
+            withinEps = maxDist <= eps;
+        }
+
+        // 2. split there
+        if (!withinEps) {
+            int sliceStart = pos % count;
+            int sliceEnd = (rightStart + sliceStart) % count;
+            top = push(top, sliceEnd, sliceStart);
+            top = push(top, sliceStart, sliceEnd);
+        } else {
+            newCount = write(out, newCount, startX, startY);
+        }
+
+        // 3. split every range until its points are close enough to the chord
+        while (top > 0) {
+            top -= 2;
+            int sliceStart = this.slices[top];
+            int sliceEnd = this.slices[top + 1];
+            int endX = points[sliceEnd * 2];
+            int endY = points[sliceEnd * 2 + 1];
+            pos = sliceStart;
+            startX = points[pos * 2];
+            startY = points[pos * 2 + 1];
+            pos = next(pos, count);
+            int splitAt = 0;
+            if (pos != sliceEnd) {
+                long dx = endX - startX;
+                long dy = endY - startY;
+                long maxDist = 0;
+                while (pos != sliceEnd) {
+                    int x = points[pos * 2];
+                    int y = points[pos * 2 + 1];
+                    long dist = Math.abs((y - startY) * dx - (x - startX) * dy);
+                    if (dist > maxDist) {
+                        maxDist = dist;
+                        splitAt = pos;
+                    }
+                    pos = next(pos, count);
+                }
+                double maxDistance = maxDist;
+                withinEps = maxDistance * maxDistance <= eps * (double) (dx * dx + dy * dy);
+            } else {
+                withinEps = true;
+            }
+
+            if (withinEps) {
+                newCount = write(out, newCount, startX, startY);
+            } else {
+                top = push(top, splitAt, sliceEnd);
+                top = push(top, sliceStart, splitAt);
+            }
+        }
+
+        // 4. drop the points left on (almost) straight lines
+        count = newCount;
+        pos = count - 1;
+        startX = out[pos * 2];
+        startY = out[pos * 2 + 1];
+        pos = next(pos, count);
+        int writePos = pos;
+        int x = out[pos * 2];
+        int y = out[pos * 2 + 1];
+        pos = next(pos, count);
+        for (int i = 0; i < count && newCount > 2; i++) {
+            int endX = out[pos * 2];
+            int endY = out[pos * 2 + 1];
+            pos = next(pos, count);
+            double dx = endX - startX;
+            double dy = endY - startY;
+            double dist = Math.abs((x - startX) * dy - (y - startY) * dx);
+            double innerProduct = (double) (x - startX) * (endX - x) + (double) (y - startY) * (endY - y);
+            if (dist * dist <= 0.5 * eps * (dx * dx + dy * dy) && dx != 0 && dy != 0 && innerProduct >= 0) {
+                newCount--;
+                startX = endX;
+                startY = endY;
+                out[writePos * 2] = startX;
+                out[writePos * 2 + 1] = startY;
+                writePos = next(writePos, count);
+                x = out[pos * 2];
+                y = out[pos * 2 + 1];
+                pos = next(pos, count);
+                i++;
+                continue;
+            }
+            startX = x;
+            startY = y;
+            out[writePos * 2] = startX;
+            out[writePos * 2 + 1] = startY;
+            writePos = next(writePos, count);
+            x = endX;
+            y = endY;
+        }
+        return newCount;
+    }
+
+    private static int next(int pos, int count) {
+        return pos + 1 >= count ? 0 : pos + 1;
+    }
+
+    private int push(int top, int start, int end) {
+        if (top + 2 > this.slices.length) {
+            this.slices = Arrays.copyOf(this.slices, this.slices.length * 2);
+        }
+        this.slices[top] = start;
+        this.slices[top + 1] = end;
+        return top + 2;
+    }
+
+    private static int write(int[] out, int count, int x, int y) {
+        out[count * 2] = x;
+        out[count * 2 + 1] = y;
+        return count + 1;
+    }
+
+    /**
+     * Indices of the convex hull points in counter-clockwise order, as Imgproc.convexHull(clockwise = false).
+     *
+     * @param hull room for count indices
+     * @return the number of indices written to hull
+     */
+    public int convexHull(int[] points, int count, int[] hull) {
+        if (count == 0) {
+            return 0;
+        }
+        this.sorted = ensureCapacity(this.sorted, count);
+        this.order = ensureCapacity(this.order, count);
+        this.stack = ensureCapacity(this.stack, count + 2);
+        // sort by x, then y, then index
+        for (int i = 0; i < count; i++) {
+            this.sorted[i] = (long) points[i * 2] << (2 * COORDINATE_BITS)
+              | (long) points[i * 2 + 1] << COORDINATE_BITS | i;
+        }
+        Arrays.sort(this.sorted, 0, count);
+        int minYIndex = 0, maxYIndex = 0;
+        for (int i = 0; i < count; i++) {
+            this.order[i] = (int) (this.sorted[i] & ((1 << COORDINATE_BITS) - 1));
+            int y = y(points, i);
+            if (i > 0 && y(points, minYIndex) > y) {
+                minYIndex = i;
+            }
+            if (i > 0 && y(points, maxYIndex) < y) {
+                maxYIndex = i;
+            }
+        }
+
+        int n = 0;
+        if (x(points, 0) == x(points, count - 1) && y(points, 0) == y(points, count - 1)) {
+            hull[n++] = 0;
+            return n;
+        }
+
+        // upper half: the right chain first, so the result runs counter-clockwise
+        int leftCount = sklansky(points, 0, maxYIndex, 0, -1, 1);
+        int rightCount = sklansky(points, count - 1, maxYIndex, leftCount, -1, -1);
+        for (int i = 0; i < rightCount - 1; i++) {
+            hull[n++] = this.order[this.stack[leftCount + i]];
+        }
+        for (int i = leftCount - 1; i > 0; i--) {
+            hull[n++] = this.order[this.stack[i]];
+        }
+        int stopIndex = leftCount > 2 ? this.stack[1] : rightCount > 2 ? this.stack[leftCount + rightCount - 2] : -1;
+
+        // lower half
+        leftCount = sklansky(points, 0, minYIndex, 0, 1, -1);
+        rightCount = sklansky(points, count - 1, minYIndex, leftCount, 1, 1);
+        if (stopIndex >= 0) {
+            // the second point of the lower half, wherever the left chain ends
+            int checkIndex = leftCount > 2 ? this.stack[1] : leftCount + rightCount > 2 ? this.stack[2] : -1;
+            if (checkIndex == stopIndex || (checkIndex >= 0 && x(points, checkIndex) == x(points, stopIndex)
+              && y(points, checkIndex) == y(points, stopIndex))) {
+                // all the points lie on one line, the lower half mirrors the upper one
+                leftCount = Math.min(leftCount, 2);
+                rightCount = Math.min(rightCount, 2);
+            }
+        }
+        for (int i = 0; i < leftCount - 1; i++) {
+            hull[n++] = this.order[this.stack[i]];
+        }
+        for (int i = rightCount - 1; i > 0; i--) {
+            hull[n++] = this.order[this.stack[leftCount + i]];
+        }
+
+        rotateToMonotonic(hull, n);
+        return n;
+    }
+
+    // coordinates of the point at a position of the sorted order
+    private int x(int[] points, int sortedIndex) {
+        return points[this.order[sortedIndex] * 2];
+    }
+
+    private int y(int[] points, int sortedIndex) {
+        return points[this.order[sortedIndex] * 2 + 1];
+    }
+
+    // one monotone chain of Sklansky's scan between two positions of the sorted order, left on the stack at offset
+    private int sklansky(int[] points, int start, int end, int offset, int nsign, int sign2) {
+        int[] stack = this.stack;
+        int incr = end > start ? 1 : -1;
+        int pprev = start, pcur = pprev + incr, pnext = pcur + incr;
+        int size = 3;
+
+        if (start == end || (x(points, start) == x(points, end) && y(points, start) == y(points, end))) {
+            stack[offset] = start;
+            return 1;
+        }
+
+        stack[offset] = pprev;
+        stack[offset + 1] = pcur;
+        stack[offset + 2] = pnext;
+        end += incr;
+
+        while (pnext != end) {
+            int curY = y(points, pcur);
+            int by = y(points, pnext) - curY;
+            if (Integer.signum(by) != nsign) {
+                int ax = x(points, pcur) - x(points, pprev);
+                int bx = x(points, pnext) - x(points, pcur);
+                int ay = curY - y(points, pprev);
+                long convexity = (long) ay * bx - (long) ax * by;
+                if (Long.signum(convexity) == sign2 && (ax != 0 || ay != 0)) {
+                    pprev = pcur;
+                    pcur = pnext;
+                    pnext += incr;
+                    stack[offset + size] = pnext;
+                    size++;
+                } else if (pprev == start) {
+                    pcur = pnext;
+                    stack[offset + 1] = pcur;
+                    pnext += incr;
+                    stack[offset + 2] = pnext;
+                } else {
+                    stack[offset + size - 2] = pnext;
+                    pcur = pprev;
+                    pprev = stack[offset + size - 4];
+                    size--;
+                }
+            } else {
+                pnext += incr;
+                stack[offset + size - 1] = pnext;
+            }
+        }
+        return size - 1;
+    }
+
+    // shift the hull cyclically so its indices ascend or descend, if they can
+    private void rotateToMonotonic(int[] hull, int n) {
+        if (n < 3) {
+            return;
+        }
+        int minIndex = 0, maxIndex = 0, ascents = 0;
+        for (int i = 1; i < n; i++) {
+            int index = hull[i];
+            ascents += hull[i - 1] < index ? 1 : 0;
+            if (ascents > 1 && ascents <= i - 2) {
+                break;
+            }
+            if (index < hull[minIndex]) {
+                minIndex = i;
+            }
+            if (index > hull[maxIndex]) {
+                maxIndex = i;
+            }
+        }
+        int distance = Math.abs(maxIndex - minIndex);
+        if ((distance == 1 || distance == n - 1) && (ascents <= 1 || ascents >= n - 2)) {
+            boolean ascending = (maxIndex + 1) % n == minIndex;
+            int first = ascending ? minIndex : maxIndex;
+            if (first > 0) {
+                int i;
+                int j = first;
+                for (i = 0; i < n; i++) {
+                    int current = this.stack[i] = hull[j];
+                    int nextJ = j + 1 < n ? j + 1 : 0;
+                    if (i < n - 1 && ascending != (current < hull[nextJ])) {
+                        break;
+                    }
+                    j = nextJ;
+                }
+                if (i == n) {
+                    System.arraycopy(this.stack, 0, hull, 0, n);
+                }
+            }
+        }
+    }
+
+    /**
+     * Convexity defects of a contour against its hull, as Imgproc.convexityDefects: start index,
+     * end index, deepest point index and 256 times its depth, four ints per defect.
+     *
+     * @param defects room for 4 * hullCount ints
+     * @return the number of defects written to defects
+     */
+    public static int convexityDefects(int[] points, int count, int[] hull, int hullCount, int[] defects) {
+        if (count <= 3 || hullCount < 3) {
+            return 0;
+        }
+        // is the hull oriented like the contour
+        boolean reversed = ((hull[1] > hull[0] ? 1 : 0) + (hull[2] > hull[1] ? 1 : 0) + (hull[0] > hull[2] ? 1 : 0)) != 2;
+        int n = 0;
+        int current = hull[reversed ? 0 : hullCount - 1];
+        for (int i = 0; i < hullCount; i++) {
+            int next = hull[reversed ? hullCount - i - 1 : i];
+            int x0 = points[current * 2], y0 = points[current * 2 + 1];
+            double dx0 = points[next * 2] - x0;
+            double dy0 = points[next * 2 + 1] - y0;
+            double scale = dx0 == 0 && dy0 == 0 ? 0 : 1 / Math.sqrt(dx0 * dx0 + dy0 * dy0);
+
+            int deepest = -1;
+            double depth = 0;
+            for (int j = next(current, count); j != next; j = next(j, count)) {
+                double dx = points[j * 2] - x0;
+                double dy = points[j * 2 + 1] - y0;
+                double dist = Math.abs(-dy0 * dx + dx0 * dy) * scale;
+                if (dist > depth) {
+                    depth = dist;
+                    deepest = j;
+                }
+            }
+            if (deepest >= 0) {
+                defects[n * 4] = current;
+                defects[n * 4 + 1] = next;
+                defects[n * 4 + 2] = deepest;
+                defects[n * 4 + 3] = (int) Math.rint(depth * 256);
+                n++;
+            }
+            current = next;
+        }
+        return n;
+    }
+
+    private static int[] ensureCapacity(int[] buffer, int length) {
+        return buffer.length >= length ? buffer : new int[Math.max(length, buffer.length * 2)];
+    }
+
+    private static long[] ensureCapacity(long[] buffer, int length) {
+        return buffer.length >= length ? buffer : new long[Math.max(length, buffer.length * 2)];
+    }
+}
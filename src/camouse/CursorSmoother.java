@@ -0,0 +1,95 @@
+package camouse;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sits between the finger displacement and the mouse: filters the cursor target computed from it
+ * with a One Euro filter per axis and moves the cursor at its own rate, faster than the camera.
+ * Between frames the cursor is extrapolated along the filtered velocity from the time the last
+ * frame was captured, which hides part of the pipeline latency as well as the gaps between frames.
+ */
+public class CursorSmoother {
+    // never extrapolate further than this past the last frame
+    private static final long MAX_PREDICTION_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    // stop moving the cursor when no frame had a hand for this long
+    private static final long STALE_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    private final ScrollEventTest scroller;
+    private final OneEuroFilter filterX;
+    private final OneEuroFilter filterY;
+    private final ScheduledExecutorService timer;
+
+    // written by the gesture stage, read by the output timer; guarded by this
+    private double x;
+    private double y;
+    private double velocityX;
+    private double velocityY;
+    private long captureNanos;
+    // last position sent, to skip moves that change nothing
+    private int lastX = Integer.MIN_VALUE;
+    private int lastY = Integer.MIN_VALUE;
+
+    public CursorSmoother(ScrollEventTest scroller, double outputRate, double minCutoff, double beta) {
+        this.scroller = scroller;
+        this.filterX = new OneEuroFilter(minCutoff, beta, 1);
+        this.filterY = new OneEuroFilter(minCutoff, beta, 1);
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "camouse-cursor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = (long) (1_000_000_000L / outputRate);
+        this.timer.scheduleAtFixedRate(this::output, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    // a new cursor target, measured in the frame captured at captureNanos
+    public void update(double targetX, double targetY, long captureNanos) {
+        synchronized (this) {
+            if (this.captureNanos != 0 && captureNanos - this.captureNanos > STALE_NANOS) {
+                // the hand was gone for a while, do not smooth across the gap
+                this.filterX.reset();
+                this.filterY.reset();
+            }
+            double seconds = this.captureNanos == 0 ? 0 : (captureNanos - this.captureNanos) / 1e9;
+            this.x = this.filterX.filter(targetX, seconds);
+            this.y = this.filterY.filter(targetY, seconds);
+            this.velocityX = this.filterX.getVelocity();
+            this.velocityY = this.filterY.getVelocity();
+            this.captureNanos = captureNanos;
+        }
+    }
+
+    // hold the cursor at its filtered position until the next update
+    public void freeze() {
+        synchronized (this) {
+            this.velocityX = this.velocityY = 0;
+        }
+    }
+
+    private void output() {
+        double x, y;
+        long captureNanos;
+        synchronized (this) {
+            captureNanos = this.captureNanos;
+            long now = System.nanoTime();
+            if (captureNanos == 0 || now - captureNanos > STALE_NANOS) {
+                return;
+            }
+            double ahead = Math.min(now - captureNanos, MAX_PREDICTION_NANOS) / 1e9;
+            x = this.x + this.velocityX * ahead;
+            y = this.y + this.velocityY * ahead;
+        }
+        int roundedX = (int) Math.round(x), roundedY = (int) Math.round(y);
+        if (roundedX != this.lastX || roundedY != this.lastY) {
+            this.lastX = roundedX;
+            this.lastY = roundedY;
+            this.scroller.moveCursor(roundedX, roundedY, captureNanos);
+        }
+    }
+
+    public void close() {
+        this.timer.shutdownNow();
+    }
+}
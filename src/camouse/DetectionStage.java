@@ -0,0 +1,401 @@
+package camouse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Finds the biggest blob in the morphology output and locates the finger tips on it. The blob is
+ * either the top level contour with the largest bounding box or, optionally, the connected
+ * component with the most pixels.
+ * Masks segmented at a lower resolution are mapped back to full-frame coordinates, and the
+ * index tip is then refined at full resolution.
+ * Frames that were tracked rather than segmented get the tips followed by the FlowTracker and the
+ * rest of the last detection, moved along with the index tip.
+ * All intermediate Mats and arrays are reused from frame to frame.
+ */
+public class DetectionStage implements FrameStage {
+    private static final double SMALLEST_AREA = 0;
+    private static final float MIN_FINGER_DEPTH = 10;
+    private static final float MAX_FINGER_ANGLE = 60;
+
+    // null to always search the whole frame
+    private final RoiTracker roiTracker;
+    // pick the blob with the most pixels by labelling connected components, instead of walking all contours
+    private final boolean largestComponent;
+    // null when every frame is segmented
+    private final FlowTracker flow;
+
+    // workspace
+    private final List<MatOfPoint> contours = new ArrayList<>();
+    private final Mat hierarchy = new Mat();
+    private final ContourGeometry geometry = new ContourGeometry();
+    private final Point roiOffset = new Point();
+    private final Mat labels = new Mat();
+    private final Mat componentStats = new Mat();
+    private final Mat centroids = new Mat();
+    private final Mat componentMask = new Mat();
+    private final Scalar componentLabel = new Scalar(0);
+    private int[] componentData = new int[0];
+    private final TipRefiner tipRefiner;
+    // results of the last frame that was searched, for frames where nothing moved
+    private final Frame last = new Frame(null);
+    private Scalar scaleFactor = new Scalar(1, 1);
+    private final Scalar shift = new Scalar(0, 0);
+    private final Rect wholeFrame = new Rect();
+    private int[] hierarchyData = new int[0];
+    private int[] contourData = new int[0];
+    // the approximated contour
+    private int[] pointData = new int[0];
+    private int[] hullIndexData = new int[0];
+    private int[] defectData = new int[0];
+    // the hull points, x, y per point, one array per hull size so that each is put into the Mat whole
+    private int[][] hullData = new int[0][];
+
+    public DetectionStage() {
+        this(null);
+    }
+
+    public DetectionStage(RoiTracker roiTracker) {
+        this(roiTracker, null);
+    }
+
+    // refineLut must be a separate instance from the preprocess stage's, they run on different threads
+    public DetectionStage(RoiTracker roiTracker, ColorLut refineLut) {
+        this(roiTracker, refineLut, false);
+    }
+
+    public DetectionStage(RoiTracker roiTracker, ColorLut refineLut, boolean largestComponent) {
+        this(roiTracker, refineLut, largestComponent, null);
+    }
+
+    // flow must be the same instance as the preprocess stage's
+    public DetectionStage(RoiTracker roiTracker, ColorLut refineLut, boolean largestComponent, FlowTracker flow) {
+        this.roiTracker = roiTracker;
+        this.largestComponent = largestComponent;
+        this.flow = flow;
+        this.tipRefiner = new TipRefiner(refineLut);
+    }
+
+    @Override
+    public String name() {
+        return "detection";
+    }
+
+    @Override
+    public boolean process(Frame frame) {
+        if (frame.unchanged) {
+            this.last.copyDetectionTo(frame);
+            return true;
+        }
+        if (frame.tracked) {
+            track(frame);
+            return true;
+        }
+        frame.handDetected = false;
+        long start = System.nanoTime();
+        boolean found = this.largestComponent ? findLargestComponent(frame.morph, frame.maskRoi, frame.contour)
+          : findContour(frame.morph, frame.maskRoi, frame.contour);
+        long contourEnd = System.nanoTime();
+        frame.contourNanos = contourEnd - start;
+        if (found) {
+            if (frame.scale > 1) {
+                // back to full-frame coordinates
+                Core.multiply(frame.contour, scaleFactor(frame.scale), frame.contour);
+            }
+            frame.handDetected = findFingerTips(frame.contour, frame);
+            if (frame.handDetected && frame.scale > 1) {
+                this.tipRefiner.refine(frame);
+            }
+            frame.fingertipNanos = System.nanoTime() - contourEnd;
+        }
+        if (this.roiTracker != null) {
+            Rect hand = frame.handDetected ? Imgproc.boundingRect(frame.contour) : null;
+            this.roiTracker.update(frame.roi, hand, frame.image.cols(), frame.image.rows());
+        }
+        if (this.flow != null) {
+            this.flow.start(frame);
+        }
+        frame.copyDetectionTo(this.last);
+        return true;
+    }
+
+    // the last detection, with the tips moved by the flow and the outline and defects moved along with the index tip
+    private void track(Frame frame) {
+        this.last.copyDetectionTo(frame);
+        if (!frame.handDetected || !this.flow.track(frame)) {
+            // the last positions stand until the next frame is detected in full
+            return;
+        }
+        // whole pixels, from rounded positions, so the outline does not drift from the tip
+        int dx = (int) Math.round(frame.indexTip.x) - (int) Math.round(this.last.indexTip.x);
+        int dy = (int) Math.round(frame.indexTip.y) - (int) Math.round(this.last.indexTip.y);
+        if (dx != 0 || dy != 0) {
+            this.shift.val[0] = dx;
+            this.shift.val[1] = dy;
+            Core.add(frame.contour, this.shift, frame.contour);
+            Core.add(frame.hull, this.shift, frame.hull);
+            for (int i = 0; i < frame.defectCount * 4; i += 2) {
+                frame.defectPoints[i] += dx;
+                frame.defectPoints[i + 1] += dy;
+            }
+        }
+        if (this.roiTracker != null) {
+            int width = frame.image.cols(), height = frame.image.rows();
+            this.wholeFrame.width = width;
+            this.wholeFrame.height = height;
+            this.roiTracker.update(this.wholeFrame, Imgproc.boundingRect(frame.contour), width, height);
+        }
+        frame.copyDetectionTo(this.last);
+    }
+
+    /**
+     * Copies the biggest top level contour inside the region into the given Mat,
+     * in full-frame coordinates.
+     *
+     * @return false if there is none
+     */
+    boolean findContour(Mat maskedImage, Rect roi, MatOfPoint biggest) {
+        boolean fullFrame = roi.width == maskedImage.cols() && roi.height == maskedImage.rows();
+        Mat searched = fullFrame ? maskedImage : maskedImage.submat(roi);
+        this.roiOffset.x = roi.x;
+        this.roiOffset.y = roi.y;
+
+        // find contours
+        this.contours.clear();
+        Imgproc.findContours(searched, this.contours, this.hierarchy, Imgproc.RETR_CCOMP, Imgproc.CHAIN_APPROX_SIMPLE,
+          this.roiOffset);
+        if (!fullFrame) {
+            searched.release();
+        }
+        double maxArea = SMALLEST_AREA;
+        int biggestContourIdx = -1;
+
+        // if any contour exist...
+        if (this.hierarchy.rows() > 0 && this.hierarchy.cols() > 0) {
+            // the hierarchy is 1xN with 4 ints per contour: next, previous, first child, parent
+            this.hierarchyData = ensureCapacity(this.hierarchyData, (int) this.hierarchy.total() * 4);
+            this.hierarchy.get(0, 0, this.hierarchyData);
+            // walk the top level contours
+            for (int idx = 0; idx >= 0; idx = this.hierarchyData[idx * 4]) {
+                double area = Imgproc.boundingRect(this.contours.get(idx)).area();
+
+                if (area > maxArea) {
+                    maxArea = area;
+                    biggestContourIdx = idx;
+                }
+            }
+        }
+
+        if (biggestContourIdx > -1) {
+            this.contours.get(biggestContourIdx).copyTo(biggest);
+        }
+        // findContours hands back fresh Mats; free them now instead of waiting for the finalizer
+        for (MatOfPoint contour : this.contours) {
+            contour.release();
+        }
+        this.contours.clear();
+        return biggestContourIdx > -1;
+    }
+
+    /**
+     * Copies the outline of the connected component with the most pixels inside the region into
+     * the given Mat, in full-frame coordinates. One labelling pass finds the component; only its
+     * outline is then traced, inside its bounding box, however many other blobs there are.
+     *
+     * @return false if there is none
+     */
+    boolean findLargestComponent(Mat maskedImage, Rect roi, MatOfPoint biggest) {
+        boolean fullFrame = roi.width == maskedImage.cols() && roi.height == maskedImage.rows();
+        Mat searched = fullFrame ? maskedImage : maskedImage.submat(roi);
+        int count = Imgproc.connectedComponentsWithStats(searched, this.labels, this.componentStats, this.centroids,
+          8, CvType.CV_32S);
+        if (!fullFrame) {
+            searched.release();
+        }
+
+        // one row of left, top, width, height, area per label; label 0 is the background
+        int largest = -1;
+        double maxArea = SMALLEST_AREA;
+        if (count > 1) {
+            this.componentData = ensureCapacity(this.componentData, count * Imgproc.CC_STAT_MAX);
+            this.componentStats.get(0, 0, this.componentData);
+            for (int label = 1; label < count; label++) {
+                int area = this.componentData[label * Imgproc.CC_STAT_MAX + Imgproc.CC_STAT_AREA];
+                if (area > maxArea) {
+                    maxArea = area;
+                    largest = label;
+                }
+            }
+        }
+        if (largest < 0) {
+            return false;
+        }
+
+        int row = largest * Imgproc.CC_STAT_MAX;
+        int left = this.componentData[row + Imgproc.CC_STAT_LEFT];
+        int top = this.componentData[row + Imgproc.CC_STAT_TOP];
+        Mat box = this.labels.submat(top, top + this.componentData[row + Imgproc.CC_STAT_HEIGHT],
+          left, left + this.componentData[row + Imgproc.CC_STAT_WIDTH]);
+        // other blobs may reach into the box, keep only this one
+        this.componentLabel.val[0] = largest;
+        Core.compare(box, this.componentLabel, this.componentMask, Core.CMP_EQ);
+        box.release();
+
+        this.roiOffset.x = roi.x + left;
+        this.roiOffset.y = roi.y + top;
+        this.contours.clear();
+        Imgproc.findContours(this.componentMask, this.contours, this.hierarchy, Imgproc.RETR_EXTERNAL,
+          Imgproc.CHAIN_APPROX_SIMPLE, this.roiOffset);
+        // a single 8-connected component has a single outer border
+        boolean found = !this.contours.isEmpty();
+        if (found) {
+            this.contours.get(0).copyTo(biggest);
+        }
+        for (MatOfPoint contour : this.contours) {
+            contour.release();
+        }
+        this.contours.clear();
+        return found;
+    }
+
+    /**
+     * Finds the index tip, the thumb tip and the raised fingers on the hand outline.
+     *
+     * @return false if the outline is too degenerate for a hull, e.g. a line
+     */
+    boolean findFingerTips(MatOfPoint originalContour, Frame frame) {
+        // one bulk copy, all the geometry runs on the int array
+        int numContour = (int) originalContour.total();
+        this.contourData = ensureCapacity(this.contourData, numContour * 2);
+        originalContour.get(0, 0, this.contourData);
+        double epsilon = 0.05 * ContourGeometry.arcLength(this.contourData, numContour, false);
+        this.pointData = ensureCapacity(this.pointData, numContour * 2);
+        int numPoints = this.geometry.approxPolyDP(this.contourData, numContour, epsilon, this.pointData);
+
+        this.hullIndexData = ensureCapacity(this.hullIndexData, numPoints);
+        int numHull = this.geometry.convexHull(this.pointData, numPoints, this.hullIndexData);
+        if (numHull < 3) {
+            return false;
+        }
+
+        int[] hullPoints = hullBuffer(numHull);
+        int topMostPointY = Integer.MAX_VALUE;
+        int topMostPointIndex = -1;
+        for (int i = 0; i < numHull; i++) {
+            int index = this.hullIndexData[i];
+            int x = this.pointData[index * 2];
+            int y = this.pointData[index * 2 + 1];
+            if (y < topMostPointY) {
+                topMostPointY = y;
+                topMostPointIndex = i;
+            }
+            hullPoints[i * 2] = x;
+            hullPoints[i * 2 + 1] = y;
+        }
+        frame.hull.create(numHull, 1, CvType.CV_32SC2);
+        frame.hull.put(0, 0, hullPoints);
+
+        frame.thumbExtended = false;
+        frame.thumbTip.x = frame.thumbTip.y = -1;
+        frame.indexTip.x = hullPoints[topMostPointIndex * 2];
+        frame.indexTip.y = hullPoints[topMostPointIndex * 2 + 1];
+
+        this.defectData = ensureCapacity(this.defectData, numHull * 4);
+        int numDefects = ContourGeometry.convexityDefects(this.pointData, numPoints, this.hullIndexData, numHull,
+          this.defectData);
+        frame.ensureDefectCapacity(numDefects);
+        frame.defectCount = numDefects;
+
+        int[] defectPoints = frame.defectPoints;
+        for (int i = 0; i < numDefects; i++) {
+            int start = this.defectData[i * 4];
+            int valley = this.defectData[i * 4 + 2];
+            defectPoints[i * 4] = this.pointData[start * 2];
+            defectPoints[i * 4 + 1] = this.pointData[start * 2 + 1];
+            defectPoints[i * 4 + 2] = this.pointData[valley * 2];
+            defectPoints[i * 4 + 3] = this.pointData[valley * 2 + 1];
+            frame.depths[i] = this.defectData[i * 4 + 3] / 256.0;
+        }
+        if (numDefects > 0) {
+            frame.thumbExtended = true;
+            frame.thumbTip.x = defectPoints[(numDefects - 1) * 4];
+            frame.thumbTip.y = defectPoints[(numDefects - 1) * 4 + 1];
+        }
+
+        frame.fingerCount = reduceFingerTips(frame);
+        return true;
+    }
+
+    // counts the defect start points that look like finger tips
+    int reduceFingerTips(Frame frame) {
+        int fingerCount = 0;
+        int numOfPoints = frame.defectCount;
+        int[] points = frame.defectPoints;
+        for (int i = 0; i < numOfPoints; i++) {
+            if (frame.depths[i] < MIN_FINGER_DEPTH) continue;
+
+            int prevIndex = (i == 0) ? (numOfPoints - 1) : (i - 1);
+            int nextIndex = (i == numOfPoints - 1) ? 0 : (i + 1);
+            int angle = angleBetween(points[i * 4], points[i * 4 + 1], points[prevIndex * 4 + 2],
+              points[prevIndex * 4 + 3], points[nextIndex * 4 + 2], points[nextIndex * 4 + 3]);
+
+            if (angle > MAX_FINGER_ANGLE) continue;
+
+            fingerCount++;
+        }
+        return fingerCount;
+    }
+
+    int angleBetween(double tipX, double tipY, double nextX, double nextY, double prevX, double prevY) {
+        return Math.abs((int) Math.round(
+          Math.toDegrees(
+            Math.atan2(nextX - tipX, nextY - tipY) -
+              Math.atan2(prevX - tipX, prevY - tipY))));
+    }
+
+    private Scalar scaleFactor(int scale) {
+        if (this.scaleFactor.val[0] != scale) {
+            this.scaleFactor = new Scalar(scale, scale);
+        }
+        return this.scaleFactor;
+    }
+
+    // an array of exactly numHull points: there is no int[] put with a length
+    private int[] hullBuffer(int numHull) {
+        if (numHull >= this.hullData.length) {
+            this.hullData = Arrays.copyOf(this.hullData, Math.max(numHull + 1, this.hullData.length * 2));
+        }
+        if (this.hullData[numHull] == null) {
+            this.hullData[numHull] = new int[numHull * 2];
+        }
+        return this.hullData[numHull];
+    }
+
+    private static int[] ensureCapacity(int[] buffer, int length) {
+        return buffer.length >= length ? buffer : new int[Math.max(length, buffer.length * 2)];
+    }
+
+    @Override
+    public void close() {
+        this.hierarchy.release();
+        this.labels.release();
+        this.componentStats.release();
+        this.centroids.release();
+        this.componentMask.release();
+        this.tipRefiner.dispose();
+        this.last.dispose();
+        if (this.flow != null) {
+            this.flow.dispose();
+        }
+    }
+}
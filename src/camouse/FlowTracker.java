@@ -0,0 +1,203 @@
+package camouse;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfFloat;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.core.TermCriteria;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.video.Video;
+
+/**
+ * Follows the index and thumb tips from frame to frame with pyramidal Lucas-Kanade optical flow, so
+ * the segmentation and contour analysis only run on every interval-th frame. After a full detection
+ * its tips become the points to follow; on the frames in between only a small grey patch around them
+ * is converted and searched, and the tips move with the flow, to a fraction of a pixel.
+ * A point whose patch no longer looks the same, or that does not lead back to where it came from
+ * when followed in reverse, ends tracking and the next frame is detected in full. The periodic
+ * detection picks up what the flow cannot see: a folded thumb coming out or a second finger raised.
+ * The preprocess stage asks whether a frame needs segmenting, the detection stage does the rest.
+ */
+public class FlowTracker {
+    private static final Size WINDOW_SIZE = new Size(15, 15);
+    private static final int PYRAMID_LEVELS = 2;
+    // room around the points for the search; the pyramid cannot follow a point much further anyway
+    private static final int MARGIN = 48;
+    // pixels a point may miss its start by when followed back
+    private static final double MAX_ROUND_TRIP_ERROR = 1.0;
+    // mean grey level difference between the window around a point in the two frames
+    private static final double MAX_PATCH_ERROR = 20;
+    private static final int MAX_POINTS = 2;
+
+    // segment one frame in this many
+    private final int interval;
+    // written by the detection stage, read by the preprocess stage
+    private volatile boolean tracking;
+    // preprocess thread only
+    private int sinceDetection;
+
+    // detection thread only: the grey patch of the last frame and where it was taken
+    private Mat previous = new Mat();
+    private Mat current = new Mat();
+    private final Rect patchRect = new Rect();
+    private final Rect nextRect = new Rect();
+    private final TermCriteria criteria = new TermCriteria(TermCriteria.COUNT + TermCriteria.EPS, 20, 0.03);
+    private final MatOfPoint2f startPoints = new MatOfPoint2f();
+    private final MatOfPoint2f endPoints = new MatOfPoint2f();
+    private final MatOfPoint2f backPoints = new MatOfPoint2f();
+    private final MatOfByte status = new MatOfByte();
+    private final MatOfByte backStatus = new MatOfByte();
+    private final MatOfFloat error = new MatOfFloat();
+    private final MatOfFloat backError = new MatOfFloat();
+    // x, y of the index tip and, while the thumb is out, the thumb tip, in full-frame coordinates
+    private final float[] points = new float[MAX_POINTS * 2];
+    private final float[] start = new float[MAX_POINTS * 2];
+    private final float[] end = new float[MAX_POINTS * 2];
+    private final float[] back = new float[MAX_POINTS * 2];
+    private final byte[] statusData = new byte[MAX_POINTS];
+    private final byte[] backStatusData = new byte[MAX_POINTS];
+    private final float[] errorData = new float[MAX_POINTS];
+    private int count;
+
+    public FlowTracker(int interval) {
+        this.interval = interval;
+    }
+
+    // preprocess thread: true if the next frame can be tracked instead of segmented
+    public boolean skipSegmentation() {
+        if (this.tracking && ++this.sinceDetection < this.interval) {
+            return true;
+        }
+        this.sinceDetection = 0;
+        return false;
+    }
+
+    // detection thread: follow the tips of a fully detected frame from now on
+    public void start(Frame frame) {
+        this.count = 0;
+        if (frame.handDetected && !frame.idle) {
+            add(frame.indexTip.x, frame.indexTip.y);
+            if (frame.thumbExtended) {
+                add(frame.thumbTip.x, frame.thumbTip.y);
+            }
+        }
+        this.tracking = this.count > 0 && grab(frame.image);
+    }
+
+    /**
+     * Moves the tips of a frame that was not segmented along the flow from the last frame.
+     *
+     * @return false if they could not be followed; the frame is left alone and the next one is detected in full
+     */
+    public boolean track(Frame frame) {
+        long start = System.nanoTime();
+        boolean followed = this.tracking && follow(frame);
+        this.tracking = followed;
+        frame.flowNanos = System.nanoTime() - start;
+        return followed;
+    }
+
+    private boolean follow(Frame frame) {
+        Mat image = frame.image;
+        Rect rect = this.patchRect;
+        if (rect.x + rect.width > image.cols() || rect.y + rect.height > image.rows()) {
+            return false;
+        }
+        Mat patch = image.submat(rect);
+        Imgproc.cvtColor(patch, this.current, Imgproc.COLOR_BGR2GRAY);
+        patch.release();
+
+        // forwards, then back from where the points ended up
+        for (int i = 0; i < this.count; i++) {
+            this.start[i * 2] = this.points[i * 2] - rect.x;
+            this.start[i * 2 + 1] = this.points[i * 2 + 1] - rect.y;
+        }
+        this.startPoints.create(this.count, 1, CvType.CV_32FC2);
+        this.startPoints.put(0, 0, this.start);
+        Video.calcOpticalFlowPyrLK(this.previous, this.current, this.startPoints, this.endPoints, this.status,
+          this.error, WINDOW_SIZE, PYRAMID_LEVELS, this.criteria);
+        Video.calcOpticalFlowPyrLK(this.current, this.previous, this.endPoints, this.backPoints, this.backStatus,
+          this.backError, WINDOW_SIZE, PYRAMID_LEVELS, this.criteria);
+        this.endPoints.get(0, 0, this.end);
+        this.backPoints.get(0, 0, this.back);
+        this.status.get(0, 0, this.statusData);
+        this.backStatus.get(0, 0, this.backStatusData);
+        this.error.get(0, 0, this.errorData);
+        for (int i = 0; i < this.count; i++) {
+            if (this.statusData[i] == 0 || this.backStatusData[i] == 0 || this.errorData[i] > MAX_PATCH_ERROR
+              || Math.hypot(this.back[i * 2] - this.start[i * 2], this.back[i * 2 + 1] - this.start[i * 2 + 1])
+              > MAX_ROUND_TRIP_ERROR) {
+                return false;
+            }
+        }
+
+        for (int i = 0; i < this.count; i++) {
+            this.points[i * 2] = this.end[i * 2] + rect.x;
+            this.points[i * 2 + 1] = this.end[i * 2 + 1] + rect.y;
+        }
+        frame.indexTip.x = this.points[0];
+        frame.indexTip.y = this.points[1];
+        if (this.count > 1) {
+            frame.thumbTip.x = this.points[2];
+            frame.thumbTip.y = this.points[3];
+        }
+
+        // the patch around the new positions is what the next frame is compared with
+        patchAround(image.cols(), image.rows(), this.nextRect);
+        if (this.nextRect.equals(rect)) {
+            Mat swap = this.previous;
+            this.previous = this.current;
+            this.current = swap;
+            return true;
+        }
+        return grab(image);
+    }
+
+    private void add(double x, double y) {
+        this.points[this.count * 2] = (float) x;
+        this.points[this.count * 2 + 1] = (float) y;
+        this.count++;
+    }
+
+    // keep the grey patch around the points
+    private boolean grab(Mat image) {
+        patchAround(image.cols(), image.rows(), this.patchRect);
+        if (this.patchRect.width <= 0 || this.patchRect.height <= 0) {
+            return false;
+        }
+        Mat patch = image.submat(this.patchRect);
+        Imgproc.cvtColor(patch, this.previous, Imgproc.COLOR_BGR2GRAY);
+        patch.release();
+        return true;
+    }
+
+    // the box around the points with room for the search, inside the frame
+    private void patchAround(int width, int height, Rect rect) {
+        float left = Float.MAX_VALUE, top = Float.MAX_VALUE, right = -Float.MAX_VALUE, bottom = -Float.MAX_VALUE;
+        for (int i = 0; i < this.count; i++) {
+            left = Math.min(left, this.points[i * 2]);
+            top = Math.min(top, this.points[i * 2 + 1]);
+            right = Math.max(right, this.points[i * 2]);
+            bottom = Math.max(bottom, this.points[i * 2 + 1]);
+        }
+        rect.x = Math.max(0, (int) left - MARGIN);
+        rect.y = Math.max(0, (int) top - MARGIN);
+        rect.width = Math.min(width, (int) right + MARGIN + 1) - rect.x;
+        rect.height = Math.min(height, (int) bottom + MARGIN + 1) - rect.y;
+    }
+
+    public void dispose() {
+        this.previous.release();
+        this.current.release();
+        this.startPoints.release();
+        this.endPoints.release();
+        this.backPoints.release();
+        this.status.release();
+        this.backStatus.release();
+        this.error.release();
+        this.backError.release();
+    }
+}
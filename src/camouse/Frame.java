@@ -0,0 +1,155 @@
+package camouse;
+
+import java.util.Arrays;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+
+/**
+ * A captured image together with everything the pipeline stages derive from it.
+ * A frame is owned by exactly one stage at a time, so its fields need no synchronization.
+ * Frames are pooled: all Mats and points are allocated once and reused for every capture.
+ */
+public class Frame {
+    private static final int INITIAL_DEFECT_CAPACITY = 16;
+    // stages a frame keeps the processing time of
+    static final int MAX_STAGES = 8;
+    // gesture events, as bits of gestureEvents
+    static final int LEFT_PRESS = 1;
+    static final int LEFT_RELEASE = 2;
+    static final int RIGHT_CLICK = 4;
+    static final int SCROLL = 8;
+
+    private final FramePool pool;
+    long sequence;
+    long captureNanos;
+
+    // images
+    final Mat image = new Mat();
+    final Mat mask = new Mat();
+    final Mat morph = new Mat();
+
+    // the part of the image that was processed, in full-frame coordinates
+    final Rect roi = new Rect();
+    // mask and morph are this many times smaller than the image
+    int scale = 1;
+    // the processed part in mask coordinates
+    final Rect maskRoi = new Rect();
+
+    // step timings left by the stages for the pipeline statistics, 0 when the step did not run
+    long contourNanos;
+    long fingertipNanos;
+    long flowNanos;
+    // processing time per stage, in pipeline order; 0 for stages the frame has not been through
+    final long[] stageNanos = new long[MAX_STAGES];
+
+    // settings the frame was processed with
+    ProcessingSettings settings;
+
+    // nothing moved since the last segmented frame, the detection results are repeated from it
+    boolean unchanged;
+    // not segmented, the tips were followed from the last frame by optical flow
+    boolean tracked;
+    // captured in idle mode, at a lower resolution and rate; only used to notice a hand coming back
+    boolean idle;
+
+    // detection results
+    boolean handDetected;
+    final MatOfPoint contour = new MatOfPoint();
+    final MatOfPoint hull = new MatOfPoint();
+    final Point indexTip = new Point(-1, -1);
+    final Point thumbTip = new Point(-1, -1);
+    boolean thumbExtended;
+    int defectCount;
+    // defect start points that look like raised fingers
+    int fingerCount;
+    // per defect: start x, y, valley x, y
+    int[] defectPoints = new int[0];
+    double[] depths = new double[0];
+
+    // what the gesture engine did with the frame
+    int gestureEvents;
+    int scrollNotches;
+
+    Frame(FramePool pool) {
+        this.pool = pool;
+        ensureDefectCapacity(INITIAL_DEFECT_CAPACITY);
+    }
+
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    public Mat getImage() {
+        return this.image;
+    }
+
+    // prepare a recycled frame for a new capture
+    void reset(long sequence) {
+        this.sequence = sequence;
+        this.captureNanos = 0;
+        this.contourNanos = this.fingertipNanos = this.flowNanos = 0;
+        Arrays.fill(this.stageNanos, 0);
+        this.settings = null;
+        this.scale = 1;
+        this.unchanged = false;
+        this.tracked = false;
+        this.idle = false;
+        this.handDetected = false;
+        this.thumbExtended = false;
+        this.defectCount = 0;
+        this.fingerCount = 0;
+        this.gestureEvents = 0;
+        this.scrollNotches = 0;
+        this.indexTip.x = this.indexTip.y = -1;
+        this.thumbTip.x = this.thumbTip.y = -1;
+    }
+
+    // grow the defect arrays; only happens until the largest defect count has been seen once
+    void ensureDefectCapacity(int capacity) {
+        if (this.depths.length >= capacity) {
+            return;
+        }
+        this.defectPoints = new int[capacity * 4];
+        this.depths = new double[capacity];
+    }
+
+    // copy the detection results to another frame
+    void copyDetectionTo(Frame other) {
+        other.handDetected = this.handDetected;
+        if (this.handDetected) {
+            this.contour.copyTo(other.contour);
+            this.hull.copyTo(other.hull);
+        }
+        other.indexTip.x = this.indexTip.x;
+        other.indexTip.y = this.indexTip.y;
+        other.thumbTip.x = this.thumbTip.x;
+        other.thumbTip.y = this.thumbTip.y;
+        other.thumbExtended = this.thumbExtended;
+        other.fingerCount = this.fingerCount;
+        other.ensureDefectCapacity(this.defectCount);
+        other.defectCount = this.defectCount;
+        System.arraycopy(this.defectPoints, 0, other.defectPoints, 0, this.defectCount * 4);
+        System.arraycopy(this.depths, 0, other.depths, 0, this.defectCount);
+    }
+
+    // hand the frame back to its pool (or free it if it has none)
+    void release() {
+        if (this.pool != null) {
+            this.pool.recycle(this);
+        } else {
+            dispose();
+        }
+    }
+
+    // free the native memory held by this frame
+    void dispose() {
+        this.image.release();
+        this.mask.release();
+        this.morph.release();
+        this.contour.release();
+        this.hull.release();
+    }
+}
@@ -0,0 +1,47 @@
+package camouse;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded hand-off between two pipeline stages. When full, the oldest frame is dropped
+ * so that a slow consumer always works on the freshest data.
+ */
+public class FrameBuffer {
+    private final ArrayBlockingQueue<Frame> queue;
+    private final AtomicLong dropped = new AtomicLong();
+
+    public FrameBuffer(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    public void offer(Frame frame) {
+        while (!this.queue.offer(frame)) {
+            Frame oldest = this.queue.poll();
+            if (oldest != null) {
+                oldest.release();
+                this.dropped.incrementAndGet();
+            }
+        }
+    }
+
+    // null when empty
+    public Frame poll() {
+        return this.queue.poll();
+    }
+
+    public boolean isEmpty() {
+        return this.queue.isEmpty();
+    }
+
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    public void clear() {
+        Frame frame;
+        while ((frame = this.queue.poll()) != null) {
+            frame.release();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package camouse;
+
+/**
+ * Sleeps just long enough to deliver frames at a fixed rate.
+ */
+class FramePacer {
+    private final long frameIntervalNanos;
+    private long nextFrameNanos;
+
+    FramePacer(double fps) {
+        this.frameIntervalNanos = (long) (1_000_000_000L / fps);
+        this.nextFrameNanos = System.nanoTime();
+    }
+
+    void awaitNextFrame() {
+        long wait = this.nextFrameNanos - System.nanoTime();
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // never try to catch up on frames we were too slow for
+        this.nextFrameNanos = Math.max(this.nextFrameNanos + this.frameIntervalNanos, System.nanoTime());
+    }
+}
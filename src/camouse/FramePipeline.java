@@ -0,0 +1,288 @@
+package camouse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs capture on its own thread and the processing stages on a pool of workers, connected by
+ * drop-oldest buffers. Throughput is bounded by the slowest stage instead of the sum of all stages.
+ * The pool can be shared between several pipelines (one per camera) so that they use the cores
+ * together instead of each bringing a thread per stage.
+ * Capture is driven by the source: the capture thread blocks until the next frame arrives, so the
+ * pipeline follows the camera's real rate. When processing falls behind, the first stage always
+ * gets the newest frame and the ones it never saw are counted as skipped.
+ * After a while without a hand the pipeline can go idle: the source is asked for small frames at a
+ * low rate and only a few frames a second are processed, until a hand shows up again. In between,
+ * frames the camera still delivers are taken off its queue without decoding, so the frame read when
+ * the hand comes back is a current one and not whatever the driver queued up meanwhile.
+ * All frames come from a fixed pool, so a running pipeline does not allocate new images.
+ */
+public class FramePipeline {
+    private static final int BUFFER_CAPACITY = 1;
+    // back-off when the source has no frame, e.g. at the end of a recording
+    private static final long IDLE_MS = 33;
+    // how long to wait for a stage to finish the frame it is working on
+    private static final long STOP_TIMEOUT_MS = 1000;
+    // capture rate in idle mode
+    private static final long IDLE_INTERVAL_MS = 200;
+
+    // told about the first frame that makes it out of the pipeline
+    public interface FirstFrameListener {
+        // startNanos: when the pipeline was started
+        void firstFrame(long startNanos, Frame frame, long now);
+    }
+
+    private final FramePool pool;
+    private final FrameSource source;
+    private final CaptureStage captureStage;
+    private final List<FrameStage> stages;
+    private final List<FrameBuffer> buffers = new ArrayList<>();
+    private final List<StageWorker> workers = new ArrayList<>();
+    private final PipelineStats stats;
+    private final ExecutorService executor;
+    // whether the executor was created by this pipeline and must be shut down with it
+    private final boolean ownExecutor;
+
+    // blocks on the source and feeds the first stage
+    private Thread captureThread;
+    private volatile boolean running;
+    // go idle after this long without a hand, 0 to always run at full rate
+    private volatile long idleAfterNanos;
+    private volatile long lastHandNanos;
+    private volatile boolean idle;
+    private FirstFrameListener firstFrameListener;
+    private long startNanos;
+    private final AtomicBoolean firstFrame = new AtomicBoolean(true);
+
+    // a pipeline with a worker per stage
+    public FramePipeline(FrameSource source, List<FrameStage> stages) {
+        this(source, stages, newWorkerPool(stages.size(), "camouse-stage-"), true);
+    }
+
+    // a pipeline whose stages run on a pool shared with other pipelines
+    public FramePipeline(FrameSource source, List<FrameStage> stages, ExecutorService executor) {
+        this(source, stages, executor, false);
+    }
+
+    private FramePipeline(FrameSource source, List<FrameStage> stages, ExecutorService executor, boolean ownExecutor) {
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        this.stages = new ArrayList<>(stages);
+        // one frame per stage, one per buffer, plus the one being captured
+        this.pool = new FramePool(2 * this.stages.size() + 1);
+        this.captureStage = new CaptureStage(source, this.pool);
+        this.source = source;
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < this.stages.size(); i++) {
+            this.buffers.add(new FrameBuffer(BUFFER_CAPACITY));
+            names.add(this.stages.get(i).name());
+        }
+        this.stats = new PipelineStats(names, this::getSkippedFrames, this::getDroppedFrames);
+        for (FrameStage stage : this.stages) {
+            stage.attach(this.stats);
+        }
+    }
+
+    // daemon threads for running stages
+    public static ExecutorService newWorkerPool(int threads, String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // must be set before start()
+    public void setIdleAfter(long millis) {
+        this.idleAfterNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    // must be set before start()
+    public void setFirstFrameListener(FirstFrameListener listener) {
+        this.firstFrameListener = listener;
+    }
+
+    public void start() {
+        this.running = true;
+        this.startNanos = System.nanoTime();
+        this.lastHandNanos = this.startNanos;
+
+        // built back to front, each worker hands its frames to the next one
+        StageWorker next = null;
+        for (int i = this.stages.size() - 1; i >= 0; i--) {
+            next = new StageWorker(this.stages.get(i), i, this.buffers.get(i), next, this.executor, this);
+            this.workers.add(0, next);
+        }
+
+        // cameras block until their next frame, recordings and generators pace themselves
+        this.captureThread = new Thread(() -> {
+            boolean sourceIdle = false;
+            while (this.running) {
+                // the source is only touched from this thread
+                boolean idle = this.idle;
+                if (idle != sourceIdle) {
+                    this.source.setIdle(idle);
+                    sourceIdle = idle;
+                    System.out.println(idle ? "No hand in view, going idle" : "Hand in view, back to full rate");
+                }
+                long start = System.nanoTime();
+                if (!grabFrame(idle) && !idle()) {
+                    return;
+                }
+                if (idle && !skipUntil(start + TimeUnit.MILLISECONDS.toNanos(IDLE_INTERVAL_MS))) {
+                    return;
+                }
+            }
+        }, "camouse-capture");
+        this.captureThread.setDaemon(true);
+        this.captureThread.start();
+    }
+
+    // capture one frame and hand it to the first stage
+    private boolean grabFrame(boolean idle) {
+        try {
+            long start = System.nanoTime();
+            Frame frame = this.captureStage.capture();
+            if (frame != null && !this.running) {
+                // stopped while blocked in the read, the workers may be gone
+                frame.release();
+                return false;
+            }
+            if (frame != null) {
+                frame.idle = idle;
+                this.stats.captured(frame.captureNanos, frame.captureNanos - start);
+                this.workers.get(0).offer(frame);
+                return true;
+            }
+        } catch (Exception e) {
+            // log the (full) error
+            System.err.print("Exception during the frame capture...");
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    // the frames and stages are only released once every thread using them has finished
+    public void stop() {
+        this.running = false;
+        boolean finished = true;
+        if (this.captureThread != null) {
+            try {
+                // the capture thread finishes the read it is blocked in
+                this.captureThread.join(STOP_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                // log any exception
+                System.err.println("Exception in stopping the frame capture... " + e);
+            }
+            if (this.captureThread.isAlive()) {
+                System.err.println("The capture did not return from the source in time");
+                finished = false;
+            }
+            this.captureThread = null;
+        }
+        for (StageWorker worker : this.workers) {
+            if (!worker.stop(STOP_TIMEOUT_MS)) {
+                System.err.println("A stage did not finish its frame in time");
+                finished = false;
+            }
+        }
+        if (this.ownExecutor) {
+            this.executor.shutdownNow();
+        }
+        for (FrameBuffer buffer : this.buffers) {
+            buffer.clear();
+        }
+        if (!finished) {
+            // a late thread would write into released Mats; leave them to the garbage collector instead
+            System.err.println("Not releasing the frames and stages, a thread is still using them");
+            return;
+        }
+        this.workers.clear();
+        for (FrameStage stage : this.stages) {
+            stage.close();
+        }
+        this.pool.dispose();
+    }
+
+    // a frame left the pipeline
+    void finished(Frame frame, long now) {
+        this.stats.finished(frame, now);
+        if (this.firstFrameListener != null && this.firstFrame.compareAndSet(true, false)) {
+            this.firstFrameListener.firstFrame(this.startNanos, frame, now);
+        }
+        if (this.idleAfterNanos == 0) {
+            return;
+        }
+        if (frame.handDetected) {
+            this.lastHandNanos = frame.captureNanos;
+            this.idle = false;
+        } else if (!this.idle && frame.captureNanos - this.lastHandNanos > this.idleAfterNanos) {
+            this.idle = true;
+        }
+    }
+
+    // whether the pipeline runs at the idle rate
+    public boolean isIdle() {
+        return this.idle;
+    }
+
+    // drop the frames the source delivers until the deadline or until the pipeline wakes up, sleep
+    // instead if the source cannot drop frames; false if interrupted
+    private boolean skipUntil(long deadline) {
+        while (this.running && this.idle && System.nanoTime() < deadline) {
+            if (!this.source.skip()) {
+                return sleepUntil(deadline);
+            }
+        }
+        return true;
+    }
+
+    // false if interrupted
+    private static boolean sleepUntil(long deadline) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (millis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    // back off when no frame was available (e.g. a recording has ended); false if interrupted
+    private boolean idle() {
+        try {
+            Thread.sleep(IDLE_MS);
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    // number of captured frames replaced by a newer one before the first stage got to them
+    public long getSkippedFrames() {
+        return this.buffers.get(0).getDropped();
+    }
+
+    // number of frames dropped between later stages because a consumer fell behind
+    public long getDroppedFrames() {
+        long dropped = 0;
+        for (int i = 1; i < this.buffers.size(); i++) {
+            dropped += this.buffers.get(i).getDropped();
+        }
+        return dropped;
+    }
+
+    // latency histograms and frame counters of this pipeline
+    public PipelineStats getStats() {
+        return this.stats;
+    }
+}
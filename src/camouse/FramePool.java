@@ -0,0 +1,44 @@
+package camouse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Fixed set of preallocated frames shared by one pipeline. Capture takes a free frame,
+ * and the last stage (or a buffer dropping it) gives it back.
+ */
+public class FramePool {
+    private final List<Frame> frames = new ArrayList<>();
+    private final ArrayBlockingQueue<Frame> free;
+    private long nextSequence;
+
+    public FramePool(int size) {
+        this.free = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            Frame frame = new Frame(this);
+            this.frames.add(frame);
+            this.free.add(frame);
+        }
+    }
+
+    // returns null when every frame is still in flight
+    public Frame acquire() {
+        Frame frame = this.free.poll();
+        if (frame != null) {
+            frame.reset(this.nextSequence++);
+        }
+        return frame;
+    }
+
+    void recycle(Frame frame) {
+        this.free.offer(frame);
+    }
+
+    public void dispose() {
+        for (Frame frame : this.frames) {
+            frame.dispose();
+        }
+        this.free.clear();
+    }
+}
@@ -0,0 +1,70 @@
+package camouse;
+
+import org.opencv.core.Mat;
+
+/**
+ * Where the pipeline gets its images from: a live camera, a recording or a synthetic generator.
+ */
+public interface FrameSource {
+
+    boolean open();
+
+    boolean isOpened();
+
+    /**
+     * Reads the next image into the given Mat, reusing its buffer when the size matches.
+     *
+     * @return false if no image is available (end of a recording or a read error)
+     */
+    boolean read(Mat frame);
+
+    void release();
+
+    // live sources are polled on a fixed schedule; others pace themselves inside read()
+    default boolean isLive() {
+        return false;
+    }
+
+    // settings the last frame was recorded with, null for sources that do not record them
+    default ProcessingSettings settings() {
+        return null;
+    }
+
+    // switch to (or back from) small frames at a low rate while nobody is in view, if the source can
+    default void setIdle(boolean idle) {
+    }
+
+    // takes the next image off the source without decoding it; false if the source cannot do that cheaply
+    default boolean skip() {
+        return false;
+    }
+
+    /**
+     * Builds a source from a command line spec:
+     * {@code camera[:index]}, {@code file:<video or image sequence>}, {@code session:<recorded session>}
+     * or {@code synthetic}.
+     *
+     * @param fast replay recordings and synthetic frames as fast as possible instead of at their native rate
+     * @param loop start a recording over when it ends
+     */
+    static FrameSource fromSpec(String spec, boolean fast, boolean loop) {
+        return fromSpec(spec, fast, loop, 0, 0);
+    }
+
+    // width and height request a capture size from cameras and the synthetic hand; 0 for the default
+    static FrameSource fromSpec(String spec, boolean fast, boolean loop, int width, int height) {
+        if (spec.equals("camera")) {
+            return new CameraFrameSource(0, width, height);
+        } else if (spec.startsWith("camera:")) {
+            return new CameraFrameSource(Integer.parseInt(spec.substring("camera:".length())), width, height);
+        } else if (spec.startsWith("file:")) {
+            return new VideoFileFrameSource(spec.substring("file:".length()), !fast, loop);
+        } else if (spec.startsWith("session:")) {
+            return new SessionFrameSource(spec.substring("session:".length()), !fast, loop);
+        } else if (spec.equals("synthetic")) {
+            return width > 0 && height > 0 ? new SyntheticHandSource(width, height, !fast)
+              : new SyntheticHandSource(640, 480, !fast);
+        }
+        throw new IllegalArgumentException("Unknown frame source: " + spec);
+    }
+}
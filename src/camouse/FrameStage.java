@@ -0,0 +1,26 @@
+package camouse;
+
+/**
+ * One step of the frame pipeline. A StageWorker runs each stage as tasks on an executor that may be
+ * shared with other stages and pipelines; a stage is never run on two threads at once, but not always
+ * on the same thread.
+ */
+public interface FrameStage {
+
+    String name();
+
+    /**
+     * Processes the frame in place.
+     *
+     * @return false to drop the frame instead of handing it to the next stage
+     */
+    boolean process(Frame frame);
+
+    // called once before the pipeline starts, for stages that record timings of their own
+    default void attach(PipelineStats stats) {
+    }
+
+    // free any workspace the stage holds; called once the pipeline has stopped
+    default void close() {
+    }
+}
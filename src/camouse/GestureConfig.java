@@ -0,0 +1,23 @@
+package camouse;
+
+/**
+ * Thresholds of the gesture engine. Times are in milliseconds of capture time, distances in
+ * camera pixels.
+ */
+public class GestureConfig {
+    // consecutive frames the thumb must be folded before the button goes down
+    int pressFrames = 2;
+    // consecutive frames the thumb (or the hand) must be back before the button goes up
+    int releaseFrames = 2;
+    // holding still this long turns the press into a right click, 0 for no long-press right click;
+    // with it the left button only goes down once the press cannot be a long press any more
+    long longPressMs = 0;
+    // a second click this soon after the first, at the same spot, is a double click
+    long doubleClickMs = 400;
+    // movement below this does not count as dragging
+    double stillTolerance = 6;
+    // this many fingers up switches to scrolling
+    int scrollFingers = 2;
+    // vertical finger travel per wheel notch
+    double scrollStep = 12;
+}
@@ -0,0 +1,186 @@
+package camouse;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns the per-frame hand landmarks into mouse button and wheel events:
+ * --> folding the thumb presses the left button as soon as the fold is confirmed, and unfolding
+ * releases it; moving in between drags, holding still holds the button
+ * --> optionally, holding the fold without moving turns it into a right click, without a left click before it
+ * --> a second click right after the first stays on the same spot, so the OS sees a double click
+ * --> raising a second finger scrolls with the vertical movement of the hand
+ * With the long-press right click, the left button only goes down once the fold is known not to be a
+ * long press: when the hand starts to move, or when the thumb comes back, in which case the whole click
+ * is sent at once. That delays every click, so it is off unless configured.
+ * Every transition must hold for a configurable number of frames, and all timing uses the capture
+ * timestamps, so the engine is a pure function of its input and can be replayed from recorded landmarks.
+ */
+public class GestureEngine {
+
+    // where the events go
+    public interface Listener {
+        void leftPress();
+
+        void leftRelease();
+
+        void rightClick();
+
+        // positive is down
+        void scroll(int notches);
+    }
+
+    enum State { IDLE, PRESSED, RIGHT_CLICKED, SCROLLING }
+
+    private final GestureConfig config;
+    private final Listener listener;
+    private final long longPressNanos;
+    private final long doubleClickNanos;
+
+    private State state = State.IDLE;
+    // debounce counters
+    private int foldedFrames;
+    private int extendedFrames;
+    private int scrollPoseFrames;
+    private int otherPoseFrames;
+    private int lostFrames;
+
+    // where and when the button went down, or the last click ended
+    private long pressNanos;
+    private double pressX;
+    private double pressY;
+    private boolean dragging;
+    // whether the listener was told about the press yet
+    private boolean buttonDown;
+    private long clickNanos;
+    private double clickX;
+    private double clickY;
+    private boolean cursorFrozen;
+    private double scrollAnchorY;
+
+    public GestureEngine(GestureConfig config, Listener listener) {
+        this.config = config;
+        this.listener = listener;
+        this.longPressNanos = TimeUnit.MILLISECONDS.toNanos(config.longPressMs);
+        this.doubleClickNanos = TimeUnit.MILLISECONDS.toNanos(config.doubleClickMs);
+    }
+
+    // a frame without a hand
+    public void lost() {
+        this.foldedFrames = this.extendedFrames = this.scrollPoseFrames = this.otherPoseFrames = 0;
+        if (++this.lostFrames < this.config.releaseFrames) {
+            return;
+        }
+        // never leave the button down when the hand is gone
+        if (this.state == State.PRESSED && this.buttonDown) {
+            this.listener.leftRelease();
+        }
+        this.state = State.IDLE;
+        this.cursorFrozen = false;
+    }
+
+    // a frame with the index tip at x, y
+    public void update(long captureNanos, double x, double y, boolean thumbExtended, int fingerCount) {
+        this.lostFrames = 0;
+        this.foldedFrames = thumbExtended ? 0 : this.foldedFrames + 1;
+        this.extendedFrames = thumbExtended ? this.extendedFrames + 1 : 0;
+        boolean scrollPose = fingerCount >= this.config.scrollFingers;
+        this.scrollPoseFrames = scrollPose ? this.scrollPoseFrames + 1 : 0;
+        this.otherPoseFrames = scrollPose ? 0 : this.otherPoseFrames + 1;
+
+        switch (this.state) {
+            case IDLE:
+                if (this.scrollPoseFrames >= this.config.pressFrames) {
+                    this.state = State.SCROLLING;
+                    this.scrollAnchorY = y;
+                } else if (this.foldedFrames >= this.config.pressFrames) {
+                    press(captureNanos, x, y);
+                }
+                break;
+            case PRESSED:
+                if (!this.dragging && !near(x, y, this.pressX, this.pressY)) {
+                    // the button goes down where the fold started, before the cursor is let go
+                    this.dragging = true;
+                    pressButton();
+                }
+                if (this.extendedFrames >= this.config.releaseFrames) {
+                    pressButton();
+                    this.listener.leftRelease();
+                    this.state = State.IDLE;
+                    this.clickNanos = this.dragging ? 0 : captureNanos;
+                    this.clickX = this.pressX;
+                    this.clickY = this.pressY;
+                } else if (this.longPressNanos > 0 && !this.dragging
+                  && captureNanos - this.pressNanos >= this.longPressNanos) {
+                    this.listener.rightClick();
+                    this.state = State.RIGHT_CLICKED;
+                }
+                break;
+            case RIGHT_CLICKED:
+                if (this.extendedFrames >= this.config.releaseFrames) {
+                    this.state = State.IDLE;
+                }
+                break;
+            case SCROLLING:
+                if (this.otherPoseFrames >= this.config.releaseFrames) {
+                    this.state = State.IDLE;
+                    break;
+                }
+                int notches = (int) ((y - this.scrollAnchorY) / this.config.scrollStep);
+                if (notches != 0) {
+                    this.listener.scroll(notches);
+                    this.scrollAnchorY += notches * this.config.scrollStep;
+                }
+                break;
+        }
+        this.cursorFrozen = isFrozen(captureNanos, x, y);
+    }
+
+    private void press(long captureNanos, double x, double y) {
+        // a second click close to the last one goes where the first one went
+        boolean doubleClick = this.clickNanos != 0 && captureNanos - this.clickNanos <= this.doubleClickNanos
+          && near(x, y, this.clickX, this.clickY);
+        this.pressNanos = captureNanos;
+        this.pressX = doubleClick ? this.clickX : x;
+        this.pressY = doubleClick ? this.clickY : y;
+        this.dragging = false;
+        this.buttonDown = false;
+        this.state = State.PRESSED;
+        if (this.longPressNanos == 0) {
+            pressButton();
+        }
+    }
+
+    private void pressButton() {
+        if (!this.buttonDown) {
+            this.buttonDown = true;
+            this.listener.leftPress();
+        }
+    }
+
+    // keep the cursor still while a click, a double click or a right click may be in progress, and while scrolling
+    private boolean isFrozen(long captureNanos, double x, double y) {
+        switch (this.state) {
+            case PRESSED:
+                return !this.dragging;
+            case RIGHT_CLICKED:
+            case SCROLLING:
+                return true;
+            default:
+                return this.clickNanos != 0 && captureNanos - this.clickNanos <= this.doubleClickNanos
+                  && near(x, y, this.clickX, this.clickY);
+        }
+    }
+
+    private boolean near(double x, double y, double otherX, double otherY) {
+        return Math.abs(x - otherX) <= this.config.stillTolerance && Math.abs(y - otherY) <= this.config.stillTolerance;
+    }
+
+    // whether the cursor should stay where it is for the last frame
+    public boolean isCursorFrozen() {
+        return this.cursorFrozen;
+    }
+
+    State getState() {
+        return this.state;
+    }
+}
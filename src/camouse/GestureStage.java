@@ -0,0 +1,127 @@
+package camouse;
+
+/**
+ * Updates the hand tracker and turns finger movements into mouse input: the cursor follows the
+ * index finger, and a GestureEngine turns the thumb and finger poses into buttons and scrolling.
+ * With several hands only one of them moves the cursor, the others only click and scroll.
+ */
+public class GestureStage implements FrameStage, GestureEngine.Listener {
+    private final HandTracker tracker;
+    private final ScrollEventTest scroller;
+    // calibrate on the first detected hand instead of waiting for the Calibrate button
+    private final boolean autoCalibrate;
+    // null to move the cursor once per frame, with the dead zone
+    private final CursorSmoother smoother;
+    private final GestureEngine gestures;
+    // false for a hand that only clicks and scrolls
+    private final boolean movesCursor;
+    // the frame being processed, to note the events the engine fires for it
+    private Frame frame;
+
+    public GestureStage(HandTracker tracker, ScrollEventTest scroller) {
+        this(tracker, scroller, false);
+    }
+
+    public GestureStage(HandTracker tracker, ScrollEventTest scroller, boolean autoCalibrate) {
+        this(tracker, scroller, autoCalibrate, null, new GestureConfig());
+    }
+
+    public GestureStage(HandTracker tracker, ScrollEventTest scroller, boolean autoCalibrate, CursorSmoother smoother,
+                        GestureConfig gestureConfig) {
+        this(tracker, scroller, autoCalibrate, smoother, gestureConfig, true);
+    }
+
+    public GestureStage(HandTracker tracker, ScrollEventTest scroller, boolean autoCalibrate, CursorSmoother smoother,
+                        GestureConfig gestureConfig, boolean movesCursor) {
+        this.tracker = tracker;
+        this.movesCursor = movesCursor;
+        this.scroller = scroller;
+        this.autoCalibrate = autoCalibrate;
+        this.smoother = smoother;
+        this.gestures = new GestureEngine(gestureConfig, this);
+    }
+
+    @Override
+    public String name() {
+        return "gesture";
+    }
+
+    @Override
+    public void attach(PipelineStats stats) {
+        // the dispatcher is shared, the cursor hand measures it
+        if (this.movesCursor) {
+            this.scroller.setTimings(stats.input(), stats.glassToCursor());
+        }
+    }
+
+    @Override
+    public boolean process(Frame frame) {
+        this.frame = frame;
+        // idle frames are smaller, their positions do not match the calibration
+        if (!frame.handDetected || frame.idle) {
+            this.tracker.lost(frame);
+            this.gestures.lost();
+            return true;
+        }
+        HandState state = this.tracker.update(frame);
+        if (this.autoCalibrate && !state.isCalibrated() && this.tracker.calibrate()) {
+            state = this.tracker.getState();
+            System.out.println("Calibrated at " + this.tracker.getInitialPosition(HandTracker.INDEX_FINGER));
+        }
+
+        if (state.isCalibrated()) {
+            double x = state.getX(HandTracker.INDEX_FINGER), y = state.getY(HandTracker.INDEX_FINGER);
+            double initialX = state.getInitialX(HandTracker.INDEX_FINGER);
+            double initialY = state.getInitialY(HandTracker.INDEX_FINGER);
+            // buttons first, so a press is queued before any move that would shift it
+            this.gestures.update(frame.captureNanos, x, y, frame.thumbExtended, frame.fingerCount);
+            if (!this.movesCursor) {
+                return true;
+            }
+            if (this.gestures.isCursorFrozen()) {
+                if (this.smoother != null) {
+                    this.smoother.freeze();
+                }
+            } else if (this.smoother != null) {
+                // same mapping as ScrollEventTest.mouseMovement, filtered instead of cut off below 3 pixels
+                this.smoother.update(2 * x - initialX, 2 * y - initialY, frame.captureNanos);
+            } else if (!frame.unchanged) {
+                this.scroller.init((float) x, (float) y);
+                this.scroller.mouseMovement((float) (x - initialX), (float) (y - initialY), frame.captureNanos);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void leftPress() {
+        this.frame.gestureEvents |= Frame.LEFT_PRESS;
+        this.scroller.leftClickPress();
+    }
+
+    @Override
+    public void leftRelease() {
+        this.frame.gestureEvents |= Frame.LEFT_RELEASE;
+        this.scroller.leftClickRelease();
+    }
+
+    @Override
+    public void rightClick() {
+        this.frame.gestureEvents |= Frame.RIGHT_CLICK;
+        this.scroller.rightClick();
+    }
+
+    @Override
+    public void scroll(int notches) {
+        this.frame.gestureEvents |= Frame.SCROLL;
+        this.frame.scrollNotches += notches;
+        this.scroller.scroll(notches);
+    }
+
+    @Override
+    public void close() {
+        if (this.smoother != null) {
+            this.smoother.close();
+        }
+    }
+}
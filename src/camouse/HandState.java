@@ -0,0 +1,143 @@
+package camouse;
+
+import org.opencv.core.Point;
+
+/**
+ * Immutable snapshot of one hand after a frame: where the thumb and index tips are, whether the
+ * thumb is out, and the calibrated starting position the displacements are measured from.
+ * Every state a tracker publishes has a higher sequence number than the one before, so a consumer
+ * can tell a new one from one it has seen; the frame sequence tells which frame it comes from and
+ * shows the frames a consumer skipped. All values belong together, whichever thread reads them.
+ */
+public final class HandState {
+    // before the first frame
+    public static final HandState NONE = new HandState(0, -1, 0, false, false, 0, -1, -1, -1, -1, false, -1, -1, -1, -1,
+      0, 0);
+
+    private final long sequence;
+    private final long frameSequence;
+    private final long captureNanos;
+    private final boolean handDetected;
+    private final boolean thumbExtended;
+    private final int fingerCount;
+    private final double thumbX, thumbY, indexX, indexY;
+    private final boolean calibrated;
+    private final double initialThumbX, initialThumbY, initialIndexX, initialIndexY;
+    private final int frameWidth;
+    private final int frameHeight;
+
+    HandState(long sequence, long frameSequence, long captureNanos, boolean handDetected, boolean thumbExtended,
+              int fingerCount, double thumbX, double thumbY, double indexX, double indexY, boolean calibrated,
+              double initialThumbX, double initialThumbY, double initialIndexX, double initialIndexY,
+              int frameWidth, int frameHeight) {
+        this.sequence = sequence;
+        this.frameSequence = frameSequence;
+        this.captureNanos = captureNanos;
+        this.handDetected = handDetected;
+        this.thumbExtended = thumbExtended;
+        this.fingerCount = fingerCount;
+        this.thumbX = thumbX;
+        this.thumbY = thumbY;
+        this.indexX = indexX;
+        this.indexY = indexY;
+        this.calibrated = calibrated;
+        this.initialThumbX = initialThumbX;
+        this.initialThumbY = initialThumbY;
+        this.initialIndexX = initialIndexX;
+        this.initialIndexY = initialIndexY;
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+    }
+
+    // one more than the state published before this one
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    // the frame the positions come from, -1 before the first
+    public long getFrameSequence() {
+        return this.frameSequence;
+    }
+
+    // System.nanoTime() when the frame was captured
+    public long getCaptureNanos() {
+        return this.captureNanos;
+    }
+
+    // false when the hand was lost in this frame; the positions are then the last ones seen
+    public boolean isHandDetected() {
+        return this.handDetected;
+    }
+
+    public boolean isThumbExtended() {
+        return this.thumbExtended;
+    }
+
+    public int getFingerCount() {
+        return this.fingerCount;
+    }
+
+    public boolean isCalibrated() {
+        return this.calibrated;
+    }
+
+    public int getFrameWidth() {
+        return this.frameWidth;
+    }
+
+    public int getFrameHeight() {
+        return this.frameHeight;
+    }
+
+    // position of HandTracker.THUMB or HandTracker.INDEX_FINGER in frame pixels, -1 when unknown
+    public double getX(int fingerId) {
+        return fingerId == HandTracker.THUMB ? this.thumbX : this.indexX;
+    }
+
+    public double getY(int fingerId) {
+        return fingerId == HandTracker.THUMB ? this.thumbY : this.indexY;
+    }
+
+    // calibrated starting position, -1 when not calibrated
+    public double getInitialX(int fingerId) {
+        return fingerId == HandTracker.THUMB ? this.initialThumbX : this.initialIndexX;
+    }
+
+    public double getInitialY(int fingerId) {
+        return fingerId == HandTracker.THUMB ? this.initialThumbY : this.initialIndexY;
+    }
+
+    // movement since calibration
+    public double getDisplacementX(int fingerId) {
+        return getX(fingerId) - getInitialX(fingerId);
+    }
+
+    public double getDisplacementY(int fingerId) {
+        return getY(fingerId) - getInitialY(fingerId);
+    }
+
+    // the same frame, measured from another starting position
+    HandState withOrigin(long sequence, boolean calibrated, double initialThumbX, double initialThumbY,
+                         double initialIndexX, double initialIndexY) {
+        return new HandState(sequence, this.frameSequence, this.captureNanos, this.handDetected, this.thumbExtended,
+          this.fingerCount, this.thumbX, this.thumbY, this.indexX, this.indexY, calibrated, initialThumbX,
+          initialThumbY, initialIndexX, initialIndexY, this.frameWidth, this.frameHeight);
+    }
+
+    // a new Point, for callers that want one
+    public Point getPosition(int fingerId) {
+        return new Point(getX(fingerId), getY(fingerId));
+    }
+
+    public Point getDisplacement(int fingerId) {
+        return new Point(getDisplacementX(fingerId), getDisplacementY(fingerId));
+    }
+
+    @Override
+    public String toString() {
+        return "#" + this.sequence + " frame " + this.frameSequence
+          + (this.handDetected ? " index {" + this.indexX + ", " + this.indexY + "}" : " lost")
+          + (this.thumbExtended ? " thumb {" + this.thumbX + ", " + this.thumbY + "}" : " thumb folded")
+          + " fingers " + this.fingerCount;
+    }
+}
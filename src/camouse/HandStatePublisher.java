@@ -0,0 +1,209 @@
+package camouse;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Hands each new HandState to its subscribers without ever blocking the thread that publishes it.
+ * Every subscription holds only the newest state it has not delivered yet: a subscriber that has
+ * requested nothing more, or is still busy in onNext, misses the states published meanwhile and
+ * gets the latest one as soon as it asks. States arrive in sequence order, one call at a time per
+ * subscriber, on a daemon thread of its own, so a slow subscriber never holds up the others; the
+ * thread ends with the subscription. A new subscriber starts with the current state.
+ * The next state is derived from the current one and swapped in with a compare-and-set, so states
+ * published from several threads still get increasing sequence numbers.
+ */
+public class HandStatePublisher implements Flow.Publisher<HandState> {
+    private final AtomicReference<HandState> latest = new AtomicReference<>(HandState.NONE);
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    // numbers the delivery threads
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private volatile boolean closed;
+
+    // the newest state; any thread
+    public HandState latest() {
+        return this.latest.get();
+    }
+
+    /**
+     * Publishes the state built from the current one; any thread, never blocks. The function may be
+     * called again if another state was published meanwhile.
+     *
+     * @return the published state
+     */
+    public HandState publish(UnaryOperator<HandState> next) {
+        HandState previous, state;
+        do {
+            previous = this.latest.get();
+            state = next.apply(previous);
+        } while (!this.latest.compareAndSet(previous, state));
+        for (Subscription subscription : this.subscriptions) {
+            subscription.offer(state);
+        }
+        return state;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super HandState> subscriber) {
+        Objects.requireNonNull(subscriber);
+        Subscription subscription = new Subscription(subscriber, FramePipeline.newWorkerPool(1,
+          "camouse-hand-state-" + this.subscribers.incrementAndGet() + "-"));
+        subscriber.onSubscribe(subscription);
+        if (this.closed) {
+            subscription.complete();
+            return;
+        }
+        this.subscriptions.add(subscription);
+        if (this.latest.get() != HandState.NONE) {
+            subscription.offer(this.latest.get());
+        }
+    }
+
+    // a listener that takes every state it keeps up with
+    public Flow.Subscription subscribe(Consumer<HandState> listener) {
+        AtomicReference<Flow.Subscription> subscription = new AtomicReference<>();
+        subscribe(new Flow.Subscriber<HandState>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription.set(s);
+                s.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(HandState state) {
+                listener.accept(state);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                System.err.println("Hand state listener failed: " + error);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        return subscription.get();
+    }
+
+    // completes every subscription, after the state it holds if that was asked for
+    public void close() {
+        this.closed = true;
+        for (Subscription subscription : this.subscriptions) {
+            subscription.complete();
+        }
+        this.subscriptions.clear();
+    }
+
+    private final class Subscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super HandState> subscriber;
+        // delivers to this subscriber only, shut down with the subscription
+        private final ExecutorService executor;
+        private final AtomicReference<HandState> pending = new AtomicReference<>();
+        // drain only; offers racing each other may arrive out of order, older ones are skipped
+        private long delivered = -1;
+        private final AtomicLong requested = new AtomicLong();
+        // drain requests; only the caller that raises it from 0 schedules a drain
+        private final AtomicInteger work = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile boolean completing;
+        private volatile Throwable error;
+
+        Subscription(Flow.Subscriber<? super HandState> subscriber, ExecutorService executor) {
+            this.subscriber = subscriber;
+            this.executor = executor;
+        }
+
+        // replace whatever has not been delivered yet, unless it is newer
+        void offer(HandState state) {
+            this.pending.accumulateAndGet(state,
+              (held, offered) -> held == null || offered.getSequence() > held.getSequence() ? offered : held);
+            schedule();
+        }
+
+        void complete() {
+            this.completing = true;
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                this.error = new IllegalArgumentException("Requested " + n + " hand states");
+            } else {
+                // capped, Long.MAX_VALUE means no limit
+                this.requested.getAndAccumulate(n,
+                  (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+            this.pending.set(null);
+            HandStatePublisher.this.subscriptions.remove(this);
+            // lets a drain in progress finish
+            this.executor.shutdown();
+        }
+
+        private void schedule() {
+            if (this.work.getAndIncrement() == 0) {
+                try {
+                    this.executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // cancelled or completed: nothing is delivered any more
+                    run();
+                }
+            }
+        }
+
+        // deliver on the subscription's thread until nothing is left to do
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                if (this.cancelled) {
+                    return;
+                }
+                if (this.error != null) {
+                    cancel();
+                    this.subscriber.onError(this.error);
+                    return;
+                }
+                if (this.requested.get() > 0) {
+                    HandState state = this.pending.getAndSet(null);
+                    if (state != null && state.getSequence() > this.delivered) {
+                        this.delivered = state.getSequence();
+                        if (this.requested.get() != Long.MAX_VALUE) {
+                            this.requested.decrementAndGet();
+                        }
+                        try {
+                            this.subscriber.onNext(state);
+                        } catch (RuntimeException e) {
+                            cancel();
+                            this.subscriber.onError(e);
+                            return;
+                        }
+                    }
+                }
+                // a state nobody asked for is dropped rather than holding up the end
+                if (this.completing && (this.pending.get() == null || this.requested.get() == 0)) {
+                    cancel();
+                    this.subscriber.onComplete();
+                    return;
+                }
+                missed = this.work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
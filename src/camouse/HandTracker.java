@@ -0,0 +1,154 @@
+package camouse;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.opencv.core.Point;
+
+/**
+ * Holds the latest finger positions and the calibrated starting position of the hand.
+ * The starting position remembers the frame size it was measured in and follows the frames when
+ * their size changes, so a position loaded from a profile works at another camera resolution.
+ * After every frame, and whenever the calibration changes, the tracker publishes an immutable
+ * HandState; that is how other threads read it, as the newest state or as a subscription.
+ * The pipeline updates the tracker, calibration may come from any thread.
+ */
+public class HandTracker {
+    public static final int THUMB = 0;
+    public static final int INDEX_FINGER = 1;
+
+    // the starting position and the size of the frames it was measured in, replaced as a whole
+    private static final class Origin {
+        final double thumbX, thumbY, indexX, indexY;
+        final int width, height;
+
+        Origin(double thumbX, double thumbY, double indexX, double indexY, int width, int height) {
+            this.thumbX = thumbX;
+            this.thumbY = thumbY;
+            this.indexX = indexX;
+            this.indexY = indexY;
+            this.width = width;
+            this.height = height;
+        }
+
+        // the same position in frames of another size; unknown positions stay at -1
+        Origin scaledTo(int width, int height) {
+            double scaleX = (double) width / this.width, scaleY = (double) height / this.height;
+            return new Origin(this.thumbX >= 0 ? this.thumbX * scaleX : this.thumbX,
+              this.thumbY >= 0 ? this.thumbY * scaleY : this.thumbY,
+              this.indexX >= 0 ? this.indexX * scaleX : this.indexX,
+              this.indexY >= 0 ? this.indexY * scaleY : this.indexY, width, height);
+        }
+    }
+
+    // null until calibrated
+    private final AtomicReference<Origin> origin = new AtomicReference<>();
+    private final HandStatePublisher states = new HandStatePublisher();
+
+    /*
+    PUBLIC API
+     */
+    // the newest state
+    public HandState getState() {
+        return this.states.latest();
+    }
+
+    // every new state, with the latest-value semantics of HandStatePublisher
+    public HandStatePublisher getStates() {
+        return this.states;
+    }
+
+    public boolean isThumbExtended() {
+        return getState().isThumbExtended();
+    }
+
+    // a copy of the calibrated starting position, (-1, -1) if unknown
+    public Point getInitialPosition(int fingerId) {
+        Origin origin = this.origin.get();
+        if (origin == null) {
+            return new Point(-1, -1);
+        }
+        return fingerId == THUMB ? new Point(origin.thumbX, origin.thumbY) : new Point(origin.indexX, origin.indexY);
+    }
+
+    public boolean isCalibrated() {
+        return this.origin.get() != null;
+    }
+
+    // size of the frames the starting position belongs to
+    public int getFrameWidth() {
+        Origin origin = this.origin.get();
+        return origin != null ? origin.width : 0;
+    }
+
+    public int getFrameHeight() {
+        Origin origin = this.origin.get();
+        return origin != null ? origin.height : 0;
+    }
+    /*
+    END OF PUBLIC API
+     */
+
+    // take the finger positions of a processed frame and publish them
+    HandState update(Frame frame) {
+        int width = frame.image.cols(), height = frame.image.rows();
+        Origin origin = this.origin.get();
+        if (origin != null && (width != origin.width || height != origin.height)) {
+            // unless calibrated again in the meantime
+            this.origin.compareAndSet(origin, origin.scaledTo(width, height));
+        }
+        return this.states.publish(previous -> {
+            Origin current = this.origin.get();
+            return new HandState(previous.getSequence() + 1, frame.sequence, frame.captureNanos, true,
+              frame.thumbExtended, frame.fingerCount, frame.thumbTip.x, frame.thumbTip.y, frame.indexTip.x,
+              frame.indexTip.y, current != null, current != null ? current.thumbX : -1,
+              current != null ? current.thumbY : -1, current != null ? current.indexX : -1,
+              current != null ? current.indexY : -1, width, height);
+        });
+    }
+
+    // publish that the hand was not found in a frame; the last positions stay
+    HandState lost(Frame frame) {
+        return this.states.publish(previous -> new HandState(previous.getSequence() + 1, frame.sequence,
+          frame.captureNanos, false, false, 0, previous.getX(THUMB), previous.getY(THUMB), previous.getX(INDEX_FINGER),
+          previous.getY(INDEX_FINGER), previous.isCalibrated(), previous.getInitialX(THUMB), previous.getInitialY(THUMB),
+          previous.getInitialX(INDEX_FINGER), previous.getInitialY(INDEX_FINGER), previous.getFrameWidth(),
+          previous.getFrameHeight()));
+    }
+
+    // use the latest position as the origin for all displacements
+    boolean calibrate() {
+        HandState state = getState();
+        if (state.getX(INDEX_FINGER) < 0) {
+            return false;
+        }
+        Origin previous = this.origin.get();
+        double thumbX = -1, thumbY = -1;
+        if (state.isThumbExtended()) {
+            thumbX = state.getX(THUMB);
+            thumbY = state.getY(THUMB);
+        } else if (previous != null) {
+            thumbX = previous.thumbX;
+            thumbY = previous.thumbY;
+        }
+        calibrate(new Origin(thumbX, thumbY, state.getX(INDEX_FINGER), state.getY(INDEX_FINGER),
+          state.getFrameWidth(), state.getFrameHeight()));
+        return true;
+    }
+
+    // start from a position measured earlier in frames of the given size
+    boolean calibrate(CalibrationProfile profile) {
+        if (!profile.hasPosition()) {
+            return false;
+        }
+        calibrate(new Origin(profile.thumbTip.x, profile.thumbTip.y, profile.indexTip.x, profile.indexTip.y,
+          profile.frameWidth, profile.frameHeight));
+        return true;
+    }
+
+    // consumers see the new origin right away, not only with the next frame
+    private void calibrate(Origin origin) {
+        this.origin.set(origin);
+        this.states.publish(previous -> previous.withOrigin(previous.getSequence() + 1, true, origin.thumbX,
+          origin.thumbY, origin.indexX, origin.indexY));
+    }
+}
@@ -0,0 +1,163 @@
+package camouse;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+/**
+ * Runs only the detection-to-mouse path: no JavaFX stage, no previews, no overlay drawing.
+ * Each source tracks one hand with its own pipeline, tracker and gesture state; the first hand moves
+ * the cursor, the others only click and scroll. The stages of all pipelines share one worker per core
+ * and all mouse input goes through one dispatcher.
+ * Every hand is calibrated on the first frame it is seen, except the first one when the calibration
+ * profile holds a position; a first hand calibrated that way is saved to the profile on stop.
+ * Started from main, the sources, the dispatcher and the warm-up come ready-made from the Startup.
+ */
+public class HeadlessCamouse {
+    private final List<FrameSource> sources;
+    private final TrackerOptions options;
+    // null when started on its own
+    private final Startup startup;
+    private final List<FramePipeline> pipelines = new ArrayList<>();
+    private final List<StatsReporter> statsReporters = new ArrayList<>();
+    private ExecutorService workers;
+    private ScrollEventTest scroller;
+    private HandTracker cursorHand;
+    private boolean savePosition;
+
+    public HeadlessCamouse(FrameSource source, TrackerOptions options) {
+        this(List.of(source), options);
+    }
+
+    public HeadlessCamouse(List<FrameSource> sources, TrackerOptions options) {
+        this(sources, options, null);
+    }
+
+    public HeadlessCamouse(List<FrameSource> sources, TrackerOptions options, Startup startup) {
+        this.sources = new ArrayList<>(sources);
+        this.options = options;
+        this.startup = startup;
+    }
+
+    public boolean start() {
+        for (FrameSource source : this.sources) {
+            if (!source.isOpened() && !source.open()) {
+                System.err.println("Failed to open " + source + "...");
+                releaseSources();
+                return false;
+            }
+        }
+
+        this.scroller = this.startup != null ? this.startup.scroller() : new ScrollEventTest();
+        if (this.startup != null) {
+            this.startup.awaitWarmUp();
+        }
+        this.workers = FramePipeline.newWorkerPool(Runtime.getRuntime().availableProcessors(), "camouse-worker-");
+        ProcessingSettings settings = this.options.initialSettings();
+        CalibrationProfile profile = this.options.profile();
+        this.cursorHand = new HandTracker();
+        this.savePosition = profile == null || !this.cursorHand.calibrate(profile);
+        for (int i = 0; i < this.sources.size(); i++) {
+            HandTracker tracker = i == 0 ? this.cursorHand : new HandTracker();
+            FrameSource source = this.sources.get(i);
+            // a replayed session brings its own settings
+            Supplier<ProcessingSettings> frameSettings = () -> {
+                ProcessingSettings recorded = source.settings();
+                return recorded != null ? recorded : settings;
+            };
+            List<FrameStage> stages = this.options.trackingStages(frameSettings,
+              this.options.gestureStage(tracker, this.scroller, true, i == 0),
+              this.options.recordFile != null ? numbered(this.options.recordFile, i) : null);
+            FramePipeline pipeline = new FramePipeline(source, stages, this.workers);
+            pipeline.setIdleAfter(this.options.idleAfterMs);
+            if (i == 0 && this.startup != null) {
+                pipeline.setFirstFrameListener(this.startup);
+            }
+            this.pipelines.add(pipeline);
+            pipeline.start();
+            if (this.options.statsFile != null) {
+                StatsReporter reporter = new StatsReporter(pipeline.getStats(), null, numbered(this.options.statsFile, i));
+                this.statsReporters.add(reporter);
+                reporter.start();
+            }
+        }
+        return true;
+    }
+
+    // stats.json for the first hand, stats-1.json for the second...
+    private static Path numbered(Path file, int index) {
+        if (index == 0) {
+            return file;
+        }
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        name = dot > 0 ? name.substring(0, dot) + "-" + index + name.substring(dot) : name + "-" + index;
+        return file.resolveSibling(name);
+    }
+
+    public void stop() {
+        for (StatsReporter reporter : this.statsReporters) {
+            reporter.stop();
+        }
+        this.statsReporters.clear();
+        for (FramePipeline pipeline : this.pipelines) {
+            pipeline.stop();
+        }
+        this.pipelines.clear();
+        if (this.savePosition && this.cursorHand != null && this.cursorHand.isCalibrated()) {
+            this.options.saveProfile(this.options.initialSettings(), this.cursorHand);
+            this.savePosition = false;
+        }
+        if (this.workers != null) {
+            this.workers.shutdownNow();
+            this.workers = null;
+        }
+        if (this.scroller != null) {
+            this.scroller.close();
+            this.scroller = null;
+        }
+        releaseSources();
+    }
+
+    private void releaseSources() {
+        for (FrameSource source : this.sources) {
+            source.release();
+        }
+    }
+
+    // blocks until the JVM is asked to shut down
+    public static void run(FrameSource source, TrackerOptions options) {
+        run(List.of(source), options);
+    }
+
+    public static void run(List<FrameSource> sources, TrackerOptions options) {
+        run(new HeadlessCamouse(sources, options), sources);
+    }
+
+    // with the sources and dispatcher prepared by the startup
+    public static void run(Startup startup, TrackerOptions options) {
+        List<FrameSource> sources = startup.sources();
+        run(new HeadlessCamouse(sources, options, startup), sources);
+    }
+
+    private static void run(HeadlessCamouse camouse, List<FrameSource> sources) {
+        if (!camouse.start()) {
+            return;
+        }
+        System.out.println("Tracking headless on " + sources + ", press Ctrl+C to stop");
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            camouse.stop();
+            stopped.countDown();
+        }));
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            camouse.stop();
+        }
+    }
+}
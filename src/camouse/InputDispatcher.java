@@ -0,0 +1,183 @@
+package camouse;
+
+import java.awt.Robot;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Injects mouse events from its own thread, so the vision pipeline never waits on the OS input layer.
+ * Cursor moves only keep the latest target: a move that has not been injected yet is replaced by
+ * the next one. Button and wheel events are never dropped and keep their order, each one after the
+ * move that was pending when it was queued.
+ * Producers never block or allocate for moves; the queues are lock-free.
+ * Closing drops what is still queued, but never leaves a button down that the dispatcher pressed.
+ */
+public class InputDispatcher {
+    // let applications register a button or wheel event before the next one
+    private static final long EVENT_DELAY_MS = 50;
+    // upper bound on how long an idle dispatcher sleeps before checking for work again
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    // how long close waits for the event being injected
+    private static final long CLOSE_WAIT_MS = 500;
+
+    // a pending move is packed into one long: x and y as 16 bit values, then 31 bits of capture time
+    private static final long NO_MOVE = Long.MIN_VALUE;
+    private static final long TIME_MASK = (1L << 31) - 1;
+
+    private enum Type { PRESS, RELEASE, WHEEL }
+
+    private static class Event {
+        final Type type;
+        final int value;
+        // the move to inject first, or NO_MOVE
+        final long move;
+
+        Event(Type type, int value, long move) {
+            this.type = type;
+            this.value = value;
+            this.move = move;
+        }
+    }
+
+    // null when input injection is not available, events are then dropped
+    private final Robot robot;
+    private final ConcurrentLinkedQueue<Event> events = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingMove = new AtomicLong(NO_MOVE);
+    private final AtomicLong coalescedMoves = new AtomicLong();
+    private final Thread thread;
+    private volatile boolean running = true;
+    // buttons pressed and not released yet; only used on the dispatcher thread
+    private int pressedButtons;
+    // where to record how long injection takes, may be null
+    private volatile LatencyHistogram injectTiming;
+    private volatile LatencyHistogram glassToCursor;
+
+    public InputDispatcher(Robot robot) {
+        this.robot = robot;
+        this.thread = new Thread(this::run, "camouse-input");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    // move the cursor to the given screen position; captureNanos is when the frame it comes from was taken
+    public void moveTo(int x, int y, long captureNanos) {
+        long captureMicros = TimeUnit.NANOSECONDS.toMicros(captureNanos) & TIME_MASK;
+        long move = (x & 0xffffL) | (y & 0xffffL) << 16 | captureMicros << 32;
+        if (this.pendingMove.getAndSet(move) != NO_MOVE) {
+            this.coalescedMoves.incrementAndGet();
+        }
+        LockSupport.unpark(this.thread);
+    }
+
+    public void press(int buttons) {
+        add(Type.PRESS, buttons);
+    }
+
+    public void release(int buttons) {
+        add(Type.RELEASE, buttons);
+    }
+
+    public void wheel(int notches) {
+        add(Type.WHEEL, notches);
+    }
+
+    private void add(Type type, int value) {
+        // the event happens where the cursor was meant to be when it was queued
+        this.events.add(new Event(type, value, this.pendingMove.getAndSet(NO_MOVE)));
+        LockSupport.unpark(this.thread);
+    }
+
+    // moves that were replaced by a newer one before they were injected
+    public long getCoalescedMoves() {
+        return this.coalescedMoves.get();
+    }
+
+    void setTimings(LatencyHistogram injectTiming, LatencyHistogram glassToCursor) {
+        this.injectTiming = injectTiming;
+        this.glassToCursor = glassToCursor;
+    }
+
+    private void run() {
+        while (this.running) {
+            Event event = this.events.poll();
+            if (event != null) {
+                inject(event);
+                continue;
+            }
+            long move = this.pendingMove.getAndSet(NO_MOVE);
+            if (move != NO_MOVE) {
+                injectMove(move);
+            } else {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+        // on this thread, so no press or release can still be on its way
+        if (this.robot != null && this.pressedButtons != 0) {
+            this.robot.mouseRelease(this.pressedButtons);
+            this.pressedButtons = 0;
+        }
+    }
+
+    private void inject(Event event) {
+        if (event.move != NO_MOVE) {
+            injectMove(event.move);
+        }
+        if (this.robot == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        switch (event.type) {
+            case PRESS:
+                this.robot.mousePress(event.value);
+                this.pressedButtons |= event.value;
+                break;
+            case RELEASE:
+                this.robot.mouseRelease(event.value);
+                this.pressedButtons &= ~event.value;
+                break;
+            case WHEEL:
+                this.robot.mouseWheel(event.value);
+                break;
+        }
+        record(this.injectTiming, System.nanoTime() - start);
+        this.robot.delay((int) EVENT_DELAY_MS);
+    }
+
+    private void injectMove(long move) {
+        if (this.robot == null) {
+            return;
+        }
+        // sign-extend the 16 bit coordinates
+        int x = (short) move;
+        int y = (short) (move >>> 16);
+        long start = System.nanoTime();
+        this.robot.mouseMove(x, y);
+        long end = System.nanoTime();
+        record(this.injectTiming, end - start);
+        // the capture time only kept its low bits, so does the difference
+        long nowMicros = TimeUnit.NANOSECONDS.toMicros(end) & TIME_MASK;
+        record(this.glassToCursor, TimeUnit.MICROSECONDS.toNanos((nowMicros - (move >>> 32)) & TIME_MASK));
+    }
+
+    private static void record(LatencyHistogram histogram, long nanos) {
+        if (histogram != null) {
+            histogram.record(nanos);
+        }
+    }
+
+    // stop the thread, which releases the buttons it left down on its way out; other events still queued are dropped
+    public void close() {
+        this.running = false;
+        LockSupport.unpark(this.thread);
+        try {
+            this.thread.join(CLOSE_WAIT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.thread.isAlive()) {
+            System.err.println("The input thread is still injecting an event, it releases its buttons when done");
+        }
+    }
+}
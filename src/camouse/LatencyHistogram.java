@@ -0,0 +1,90 @@
+package camouse;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cheap fixed-size latency histogram: recording is one array increment, with no allocation
+ * and no locking. Buckets are exact up to 16 microseconds and then split every power of two
+ * into 16 steps, so any reported value is within about 6% of the real one.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // up to 2^31 microseconds, about 35 minutes
+    private static final int MAX_EXPONENT = 31;
+    static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    // any thread; usually only the stage that owns the histogram
+    public void record(long nanos) {
+        this.counts.incrementAndGet(bucketOf(Math.max(0, nanos / 1000)));
+    }
+
+    // copy of the current counts, for reporting
+    long[] snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = this.counts.get(i);
+        }
+        return copy;
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    // the middle of the bucket's range, in microseconds
+    static double valueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (SUB_BUCKETS + subBucket) * width + width / 2.0;
+    }
+
+    static long count(long[] counts) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    // value in microseconds below which the given fraction (0-1) of the recorded values fall
+    static double percentile(long[] counts, double fraction) {
+        long total = count(counts);
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return valueOf(i);
+            }
+        }
+        return valueOf(counts.length - 1);
+    }
+
+    static double mean(long[] counts) {
+        long total = 0;
+        double sum = 0;
+        for (int i = 0; i < counts.length; i++) {
+            total += counts[i];
+            sum += counts[i] * valueOf(i);
+        }
+        return total == 0 ? 0 : sum / total;
+    }
+}
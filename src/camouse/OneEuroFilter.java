@@ -0,0 +1,60 @@
+package camouse;
+
+/**
+ * One Euro filter (Casiez et al., CHI 2012) for one coordinate: a low-pass filter whose cutoff
+ * rises with the speed of the signal, so a still hand is steady and a moving one has little lag.
+ * Also keeps the filtered velocity, for prediction.
+ */
+public class OneEuroFilter {
+    // cutoff frequency in Hz while still; lower is smoother
+    private final double minCutoff;
+    // how fast the cutoff rises with speed (per unit/s); higher means less lag
+    private final double beta;
+    // cutoff for the velocity estimate
+    private final double derivativeCutoff;
+
+    private boolean initialized;
+    private double value;
+    private double velocity;
+
+    public OneEuroFilter(double minCutoff, double beta, double derivativeCutoff) {
+        this.minCutoff = minCutoff;
+        this.beta = beta;
+        this.derivativeCutoff = derivativeCutoff;
+    }
+
+    // filter a new sample taken seconds after the previous one
+    public double filter(double sample, double seconds) {
+        if (!this.initialized || seconds <= 0) {
+            if (!this.initialized) {
+                this.value = sample;
+                this.velocity = 0;
+                this.initialized = true;
+            }
+            return this.value;
+        }
+        double rawVelocity = (sample - this.value) / seconds;
+        this.velocity += alpha(this.derivativeCutoff, seconds) * (rawVelocity - this.velocity);
+        double cutoff = this.minCutoff + this.beta * Math.abs(this.velocity);
+        this.value += alpha(cutoff, seconds) * (sample - this.value);
+        return this.value;
+    }
+
+    private static double alpha(double cutoff, double seconds) {
+        double tau = 1 / (2 * Math.PI * cutoff);
+        return 1 / (1 + tau / seconds);
+    }
+
+    public double getValue() {
+        return this.value;
+    }
+
+    // units per second
+    public double getVelocity() {
+        return this.velocity;
+    }
+
+    public void reset() {
+        this.initialized = false;
+    }
+}
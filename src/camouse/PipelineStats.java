@@ -0,0 +1,229 @@
+package camouse;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Timing of one running pipeline: a latency histogram for capture, every stage and the steps
+ * inside them (contour, finger tips, optical flow, input injection), the capture-to-cursor latency,
+ * and counters for frames captured, processed, skipped, dropped, late, still (not segmented because
+ * nothing moved) and tracked (not segmented, followed by optical flow). Recording never allocates; reports
+ * are built from snapshots.
+ * Frames are stamped when the camera hands them over, so the driver's own latency is not included.
+ */
+public class PipelineStats {
+    static final String CAPTURE = "capture";
+    static final String CONTOUR = "contour";
+    static final String FINGERTIP = "fingertip";
+    static final String FLOW = "flow";
+    static final String INPUT = "input";
+    static final String GLASS_TO_CURSOR = "glass-to-cursor";
+
+    // insertion order is report order; the map is not modified once the pipeline runs
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+    private final List<String> stageNames;
+    private final LatencyHistogram contour;
+    private final LatencyHistogram fingertip;
+    private final LatencyHistogram flow;
+    private final LatencyHistogram input;
+    private final LatencyHistogram glassToCursor;
+    // the frame budget until the camera's real interval has been measured
+    private static final long DEFAULT_INTERVAL_NANOS = 33_000_000L;
+
+    private final LongSupplier skippedFrames;
+    private final LongSupplier droppedFrames;
+    private final LongAdder captured = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder late = new LongAdder();
+    private final LongAdder still = new LongAdder();
+    private final LongAdder tracked = new LongAdder();
+    // smoothed time between captures, written by the capture thread only
+    private volatile long captureIntervalNanos = DEFAULT_INTERVAL_NANOS;
+    private long lastCaptureNanos;
+
+    PipelineStats(List<String> stageNames, LongSupplier skippedFrames, LongSupplier droppedFrames) {
+        this.skippedFrames = skippedFrames;
+        this.droppedFrames = droppedFrames;
+        this.stageNames = List.copyOf(stageNames);
+        this.histograms.put(CAPTURE, new LatencyHistogram());
+        for (String name : stageNames) {
+            this.histograms.put(name, new LatencyHistogram());
+        }
+        this.contour = add(CONTOUR);
+        this.fingertip = add(FINGERTIP);
+        this.flow = add(FLOW);
+        this.input = add(INPUT);
+        this.glassToCursor = add(GLASS_TO_CURSOR);
+    }
+
+    private LatencyHistogram add(String name) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        this.histograms.put(name, histogram);
+        return histogram;
+    }
+
+    // the stages in pipeline order
+    List<String> stageNames() {
+        return this.stageNames;
+    }
+
+    // the histogram of a stage or step, null for unknown names
+    LatencyHistogram histogram(String name) {
+        return this.histograms.get(name);
+    }
+
+    // a frame arrived at captureNanos after waiting nanos for the source
+    void captured(long captureNanos, long nanos) {
+        this.captured.increment();
+        this.histograms.get(CAPTURE).record(nanos);
+        if (this.lastCaptureNanos != 0) {
+            long interval = captureNanos - this.lastCaptureNanos;
+            this.captureIntervalNanos += (interval - this.captureIntervalNanos) / 8;
+        }
+        this.lastCaptureNanos = captureNanos;
+    }
+
+    // take over the step timings a stage left in the frame
+    void recordSteps(Frame frame) {
+        if (frame.contourNanos > 0) {
+            this.contour.record(frame.contourNanos);
+            frame.contourNanos = 0;
+        }
+        if (frame.fingertipNanos > 0) {
+            this.fingertip.record(frame.fingertipNanos);
+            frame.fingertipNanos = 0;
+        }
+        if (frame.flowNanos > 0) {
+            this.flow.record(frame.flowNanos);
+            frame.flowNanos = 0;
+        }
+    }
+
+    // input is injected off the pipeline, by the input dispatcher
+    LatencyHistogram input() {
+        return this.input;
+    }
+
+    LatencyHistogram glassToCursor() {
+        return this.glassToCursor;
+    }
+
+    // a frame left the pipeline; it is late if that took longer than the camera's frame interval
+    void finished(Frame frame, long now) {
+        this.processed.increment();
+        if (frame.unchanged) {
+            this.still.increment();
+        }
+        if (frame.tracked) {
+            this.tracked.increment();
+        }
+        if (now - frame.captureNanos > this.captureIntervalNanos) {
+            this.late.increment();
+        }
+    }
+
+    public Snapshot snapshot() {
+        Map<String, long[]> counts = new LinkedHashMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : this.histograms.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return new Snapshot(System.nanoTime(), this.captured.sum(), this.processed.sum(),
+          this.skippedFrames.getAsLong(), this.droppedFrames.getAsLong(), this.late.sum(), this.still.sum(),
+          this.tracked.sum(), counts);
+    }
+
+    /**
+     * Counts at one point in time; the difference of two snapshots describes the interval between them.
+     */
+    public static class Snapshot {
+        // System.nanoTime() of the snapshot; for a difference, the length of the interval
+        final long nanoTime;
+        final long captured;
+        final long processed;
+        final long skipped;
+        final long dropped;
+        final long late;
+        final long still;
+        final long tracked;
+        final Map<String, long[]> counts;
+
+        Snapshot(long nanoTime, long captured, long processed, long skipped, long dropped, long late, long still,
+                 long tracked, Map<String, long[]> counts) {
+            this.nanoTime = nanoTime;
+            this.captured = captured;
+            this.processed = processed;
+            this.skipped = skipped;
+            this.dropped = dropped;
+            this.late = late;
+            this.still = still;
+            this.tracked = tracked;
+            this.counts = counts;
+        }
+
+        public Snapshot since(Snapshot earlier) {
+            Map<String, long[]> counts = new LinkedHashMap<>();
+            for (Map.Entry<String, long[]> entry : this.counts.entrySet()) {
+                long[] now = entry.getValue();
+                long[] before = earlier.counts.get(entry.getKey());
+                long[] delta = new long[now.length];
+                for (int i = 0; i < now.length; i++) {
+                    delta[i] = now[i] - (before != null ? before[i] : 0);
+                }
+                counts.put(entry.getKey(), delta);
+            }
+            return new Snapshot(this.nanoTime - earlier.nanoTime, this.captured - earlier.captured,
+              this.processed - earlier.processed, this.skipped - earlier.skipped, this.dropped - earlier.dropped,
+              this.late - earlier.late, this.still - earlier.still, this.tracked - earlier.tracked, counts);
+        }
+
+        // frames per second, for a snapshot returned by since()
+        double rate(long frames) {
+            return this.nanoTime > 0 ? frames * 1e9 / this.nanoTime : 0;
+        }
+
+        // two short lines for the UI: counters, then p50/p99 of everything that ran
+        public String toLabel() {
+            StringBuilder text = new StringBuilder(String.format(Locale.ROOT,
+              "capture %.1f fps   processed %.1f fps   skipped %d   dropped %d   late %d   still %d   tracked %d"
+                + "   (p50/p99 ms)%n",
+              rate(this.captured), rate(this.processed), this.skipped, this.dropped, this.late, this.still,
+              this.tracked));
+            for (Map.Entry<String, long[]> entry : this.counts.entrySet()) {
+                long[] counts = entry.getValue();
+                if (LatencyHistogram.count(counts) > 0) {
+                    text.append(String.format(Locale.ROOT, "%s %.1f/%.1f   ", entry.getKey(),
+                      LatencyHistogram.percentile(counts, 0.5) / 1000, LatencyHistogram.percentile(counts, 0.99) / 1000));
+                }
+            }
+            return text.toString().trim();
+        }
+
+        // one JSON object per line, all times in microseconds
+        public String toJson(long wallMillis) {
+            StringBuilder json = new StringBuilder(String.format(Locale.ROOT,
+              "{\"time\":%d,\"seconds\":%.3f,\"captured\":%d,\"processed\":%d,\"captureFps\":%.2f,"
+                + "\"processedFps\":%.2f,\"skipped\":%d,\"dropped\":%d,\"late\":%d,\"still\":%d,\"tracked\":%d,"
+                + "\"stages\":{",
+              wallMillis, this.nanoTime / 1e9, this.captured, this.processed, rate(this.captured),
+              rate(this.processed), this.skipped, this.dropped, this.late, this.still, this.tracked));
+            boolean first = true;
+            for (Map.Entry<String, long[]> entry : this.counts.entrySet()) {
+                long[] counts = entry.getValue();
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                json.append(String.format(Locale.ROOT,
+                  "\"%s\":{\"count\":%d,\"mean\":%.1f,\"p50\":%.1f,\"p90\":%.1f,\"p99\":%.1f,\"max\":%.1f}",
+                  entry.getKey(), LatencyHistogram.count(counts), LatencyHistogram.mean(counts),
+                  LatencyHistogram.percentile(counts, 0.5), LatencyHistogram.percentile(counts, 0.9),
+                  LatencyHistogram.percentile(counts, 0.99), LatencyHistogram.percentile(counts, 1)));
+            }
+            return json.append("}}").toString();
+        }
+    }
+}
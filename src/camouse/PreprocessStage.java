@@ -0,0 +1,256 @@
+package camouse;
+
+import java.util.function.Supplier;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Turns the camera image into a cleaned-up binary mask of the glove:
+ * blur, HSV threshold, then erode/dilate. With a RoiTracker only the region around the
+ * last known hand position is processed, and with a scale above 1 the mask is built from a
+ * downscaled copy of the frame, with the kernels shrunk to match. With a ColorLut the blur, HSV
+ * conversion and threshold are replaced by a single table lookup per pixel. With a ChangeDetector,
+ * frames that look like the last segmented one are passed on without a mask, marked unchanged.
+ * With a FlowTracker, only every few frames are segmented while the hand is being tracked; the
+ * others are passed on without a mask, marked tracked.
+ * Intermediate images and kernels are kept between frames, so steady state does no allocation.
+ */
+public class PreprocessStage implements FrameStage {
+    // kernel sizes at full resolution
+    static final int BLUR_SIZE = 20;
+    static final int DILATE_SIZE = 24;
+    static final int ERODE_SIZE = 12;
+    // denoise box for masks classified straight from BGR
+    static final int DENOISE_SIZE = 5;
+    private static final Scalar BLACK = new Scalar(0);
+
+    private final Supplier<ProcessingSettings> settings;
+    // null to always process the whole frame
+    private final RoiTracker roiTracker;
+    // 1 for full resolution, 2 or 4 to segment a downscaled frame
+    private final int scale;
+    // null to blur, convert to HSV and threshold instead
+    private final ColorLut colorLut;
+    // null to segment every frame
+    private final ChangeDetector changes;
+    // null to segment every frame
+    private final FlowTracker flow;
+    private ProcessingSettings lastSettings;
+
+    // workspace
+    private final Mat smallImage = new Mat();
+    private final Mat blurredImage = new Mat();
+    private final Mat hsvImage = new Mat();
+    private final Size blurSize;
+    private Mat dilateElement;
+    private Mat erodeElement;
+
+    public PreprocessStage(Supplier<ProcessingSettings> settings) {
+        this(settings, null, 1, null);
+    }
+
+    public PreprocessStage(Supplier<ProcessingSettings> settings, RoiTracker roiTracker) {
+        this(settings, roiTracker, 1, null);
+    }
+
+    public PreprocessStage(Supplier<ProcessingSettings> settings, RoiTracker roiTracker, int scale, ColorLut colorLut) {
+        this(settings, roiTracker, scale, colorLut, null);
+    }
+
+    public PreprocessStage(Supplier<ProcessingSettings> settings, RoiTracker roiTracker, int scale, ColorLut colorLut,
+                           ChangeDetector changes) {
+        this(settings, roiTracker, scale, colorLut, changes, null);
+    }
+
+    public PreprocessStage(Supplier<ProcessingSettings> settings, RoiTracker roiTracker, int scale, ColorLut colorLut,
+                           ChangeDetector changes, FlowTracker flow) {
+        this.changes = changes;
+        this.flow = flow;
+        this.settings = settings;
+        this.roiTracker = roiTracker;
+        this.scale = scale;
+        this.colorLut = colorLut;
+        this.blurSize = new Size(scaled(BLUR_SIZE, scale), scaled(BLUR_SIZE, scale));
+    }
+
+    @Override
+    public String name() {
+        return "preprocess";
+    }
+
+    @Override
+    public boolean process(Frame frame) {
+        ProcessingSettings settings = this.settings.get();
+        frame.settings = settings;
+        frame.scale = this.scale;
+        // new slider values must be applied even to a still or tracked scene
+        boolean newSettings = settings != this.lastSettings;
+        this.lastSettings = settings;
+        if (this.changes != null) {
+            if (newSettings) {
+                this.changes.reset();
+            }
+            if (!this.changes.changed(frame.image)) {
+                frame.unchanged = true;
+                return true;
+            }
+        }
+        if (this.flow != null && !newSettings && this.flow.skipSegmentation()) {
+            frame.tracked = true;
+            return true;
+        }
+        updateKernels();
+
+        int width = frame.image.cols(), height = frame.image.rows();
+        if (this.roiTracker != null) {
+            this.roiTracker.nextRoi(width, height, frame.roi);
+        } else {
+            set(frame.roi, 0, 0, width, height);
+        }
+
+        Mat source = frame.image;
+        int maskWidth = width / this.scale, maskHeight = height / this.scale;
+        if (this.scale == 1) {
+            set(frame.maskRoi, frame.roi.x, frame.roi.y, frame.roi.width, frame.roi.height);
+        } else {
+            // snap the region to whole low resolution pixels
+            int x = frame.roi.x / this.scale;
+            int y = frame.roi.y / this.scale;
+            int right = Math.min(maskWidth, (frame.roi.x + frame.roi.width + this.scale - 1) / this.scale);
+            int bottom = Math.min(maskHeight, (frame.roi.y + frame.roi.height + this.scale - 1) / this.scale);
+            set(frame.maskRoi, x, y, right - x, bottom - y);
+            set(frame.roi, x * this.scale, y * this.scale, (right - x) * this.scale, (bottom - y) * this.scale);
+
+            this.smallImage.create(maskHeight, maskWidth, frame.image.type());
+            Mat image = frame.image.submat(frame.roi);
+            Mat small = this.smallImage.submat(frame.maskRoi);
+            Imgproc.resize(image, small, small.size(), 0, 0, Imgproc.INTER_AREA);
+            image.release();
+            small.release();
+            source = this.smallImage;
+        }
+
+        // full-size buffers are only allocated when the resolution changes
+        this.blurredImage.create(maskHeight, maskWidth, frame.image.type());
+        this.hsvImage.create(maskHeight, maskWidth, frame.image.type());
+        frame.mask.create(maskHeight, maskWidth, CvType.CV_8UC1);
+        frame.morph.create(maskHeight, maskWidth, CvType.CV_8UC1);
+
+        if (frame.maskRoi.width == maskWidth && frame.maskRoi.height == maskHeight) {
+            segment(settings, source, this.blurredImage, this.hsvImage, frame.mask);
+            morphology(settings, frame.mask, frame.morph);
+            return true;
+        }
+
+        // only work on the region around the hand; everything else stays empty
+        frame.mask.setTo(BLACK);
+        frame.morph.setTo(BLACK);
+        Mat image = source.submat(frame.maskRoi);
+        Mat blurred = this.blurredImage.submat(frame.maskRoi);
+        Mat hsv = this.hsvImage.submat(frame.maskRoi);
+        Mat mask = frame.mask.submat(frame.maskRoi);
+        Mat morph = frame.morph.submat(frame.maskRoi);
+
+        segment(settings, image, blurred, hsv, mask);
+        morphology(settings, mask, morph);
+
+        image.release();
+        blurred.release();
+        hsv.release();
+        mask.release();
+        morph.release();
+        return true;
+    }
+
+    // color image to binary mask
+    private void segment(ProcessingSettings settings, Mat image, Mat blurred, Mat hsv, Mat mask) {
+        if (this.colorLut != null) {
+            this.colorLut.classify(settings, image, mask);
+        } else {
+            blur(image, blurred);
+            toHsv(blurred, hsv);
+            threshold(settings, hsv, mask);
+        }
+    }
+
+    // remove some noise
+    void blur(Mat image, Mat blurred) {
+        Imgproc.blur(image, blurred, this.blurSize);
+    }
+
+    // convert the blurred image to HSV
+    void toHsv(Mat blurred, Mat hsv) {
+        Imgproc.cvtColor(blurred, hsv, Imgproc.COLOR_BGR2HSV);
+    }
+
+    // threshold HSV image to select the glove
+    void threshold(ProcessingSettings settings, Mat hsv, Mat mask) {
+        Core.inRange(hsv, settings.minValues(), settings.maxValues(), mask);
+    }
+
+    // morphological operators
+    // dilate with large element, erode with small ones
+    void morphology(ProcessingSettings settings, Mat mask, Mat morph) {
+        morphology(settings, mask, morph, this.erodeElement, this.dilateElement);
+    }
+
+    static void morphology(ProcessingSettings settings, Mat mask, Mat morph, Mat erodeElement, Mat dilateElement) {
+        Imgproc.erode(mask, morph, erodeElement);
+        for (int i = 1; i < settings.erodeNum; i++) {
+            Imgproc.erode(morph, morph, erodeElement);
+        }
+
+        Imgproc.dilate(morph, morph, dilateElement);
+        for (int i = 1; i < settings.dilateNum; i++) {
+            Imgproc.dilate(morph, morph, dilateElement);
+        }
+    }
+
+    // build the structuring elements, scaled to the mask resolution, the first time they are needed
+    void updateKernels() {
+        if (this.dilateElement == null) {
+            this.dilateElement = structuringElement(scaled(DILATE_SIZE, this.scale));
+            this.erodeElement = structuringElement(scaled(ERODE_SIZE, this.scale));
+        }
+    }
+
+    static Mat structuringElement(int size) {
+        return Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(size, size));
+    }
+
+    static int scaled(int size, int scale) {
+        return Math.max(1, Math.round((float) size / scale));
+    }
+
+    private static void set(Rect rect, int x, int y, int width, int height) {
+        rect.x = x;
+        rect.y = y;
+        rect.width = width;
+        rect.height = height;
+    }
+
+    @Override
+    public void close() {
+        this.smallImage.release();
+        this.blurredImage.release();
+        this.hsvImage.release();
+        if (this.colorLut != null) {
+            this.colorLut.dispose();
+        }
+        if (this.changes != null) {
+            this.changes.dispose();
+        }
+        if (this.dilateElement != null) {
+            this.dilateElement.release();
+            this.erodeElement.release();
+            this.dilateElement = null;
+            this.erodeElement = null;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package camouse;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Shows Mats in an ImageView without going through BufferedImage. The Mat is converted once,
+ * straight into a direct ByteBuffer that backs a JavaFX PixelBuffer. Two buffers are used in turn,
+ * so the one being written is never the one on screen. A finished image waits in a slot until the
+ * UiPulse shows it on the next pulse.
+ */
+public class PreviewRenderer {
+    private final ImageView view;
+    private final Slot[] slots = {new Slot(), new Slot()};
+    private int nextSlot;
+    // set while an update is waiting for the FX thread
+    private final AtomicBoolean pending = new AtomicBoolean();
+    // the slot to show next
+    private final AtomicReference<Slot> ready = new AtomicReference<>();
+
+    private static class Slot {
+        int width;
+        int height;
+        Mat mat;
+        PixelBuffer<ByteBuffer> pixels;
+        WritableImage image;
+    }
+
+    public PreviewRenderer(ImageView view) {
+        this.view = view;
+    }
+
+    // call from a single non-FX thread; frames arriving before the last one was shown are skipped
+    public void render(Mat source) {
+        if (source.empty() || !this.pending.compareAndSet(false, true)) {
+            return;
+        }
+        Slot slot = prepare(this.slots[this.nextSlot], source.width(), source.height());
+        this.nextSlot ^= 1;
+
+        // the only copy: convert straight into the memory JavaFX reads from
+        if (source.channels() == 1) {
+            Imgproc.cvtColor(source, slot.mat, Imgproc.COLOR_GRAY2BGRA);
+        } else {
+            Imgproc.cvtColor(source, slot.mat, Imgproc.COLOR_BGR2BGRA);
+        }
+
+        this.ready.set(slot);
+    }
+
+    // FX thread: show the last rendered image, if there is a new one
+    void show() {
+        Slot slot = this.ready.getAndSet(null);
+        if (slot == null) {
+            return;
+        }
+        slot.pixels.updateBuffer(pixels -> null);
+        if (this.view.getImage() != slot.image) {
+            this.view.setImage(slot.image);
+        }
+        this.pending.set(false);
+    }
+
+    // (re)allocate the slot when the resolution changes
+    private Slot prepare(Slot slot, int width, int height) {
+        if (slot.image == null || slot.width != width || slot.height != height) {
+            if (slot.mat != null) {
+                slot.mat.release();
+            }
+            ByteBuffer buffer = ByteBuffer.allocateDirect(width * height * 4);
+            slot.width = width;
+            slot.height = height;
+            slot.mat = new Mat(height, width, CvType.CV_8UC4, buffer);
+            slot.pixels = new PixelBuffer<>(width, height, buffer, PixelFormat.getByteBgraPreInstance());
+            slot.image = new WritableImage(slot.pixels);
+        }
+        return slot;
+    }
+
+    public void dispose() {
+        for (Slot slot : this.slots) {
+            if (slot.mat != null) {
+                slot.mat.release();
+            }
+        }
+    }
+}
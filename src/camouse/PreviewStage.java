@@ -0,0 +1,142 @@
+package camouse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.beans.binding.BooleanBinding;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableBooleanValue;
+import javafx.scene.image.ImageView;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Last stage of the pipeline: draws the detection onto the frame and shows it in the UI.
+ * Every pane has its own refresh rate and is skipped entirely while it is hidden or its window is
+ * closed or minimized, so previews never cost more than they are worth. Nothing is posted to the FX thread from here;
+ * images and settings go to the UiPulse, which shows the latest ones once per pulse.
+ */
+public class PreviewStage implements FrameStage {
+    private static final Scalar CONTOUR_COLOR = new Scalar(250, 0, 0);
+    private static final Scalar HULL_COLOR = new Scalar(0, 255, 0);
+    private static final Scalar DEFECT_COLOR = new Scalar(0, 0, 255);
+
+    private final Pane originalPane;
+    private final Pane maskPane;
+    private final Pane morphPane;
+    private final UiPulse pulse;
+    // last settings handed to the pulse
+    private ProcessingSettings shownSettings;
+    private final List<MatOfPoint> contours = new ArrayList<>();
+    private final Point defectStart = new Point();
+
+    // one preview pane with its own rate limit
+    private static class Pane {
+        final ImageView view;
+        final PreviewRenderer renderer;
+        // the view is visible and the window is on screen
+        final BooleanBinding shown;
+        final ChangeListener<Boolean> visibilityListener = (observable, oldValue, newValue) -> this.visible = newValue;
+        final long intervalNanos;
+        long lastRenderNanos;
+        volatile boolean visible;
+
+        final UiPulse pulse;
+
+        Pane(ImageView view, ObservableBooleanValue windowShown, double fps, UiPulse pulse) {
+            this.view = view;
+            this.renderer = new PreviewRenderer(view);
+            this.pulse = pulse;
+            pulse.add(this.renderer);
+            this.intervalNanos = (long) (1_000_000_000L / fps);
+            // FX thread writes, preview thread reads
+            this.shown = view.visibleProperty().and(windowShown);
+            this.visible = this.shown.get();
+            this.shown.addListener(this.visibilityListener);
+        }
+
+        boolean isDue(long now) {
+            return this.visible && now - this.lastRenderNanos >= this.intervalNanos;
+        }
+
+        void render(Mat image, long now) {
+            this.lastRenderNanos = now;
+            this.renderer.render(image);
+        }
+
+        void dispose() {
+            this.shown.removeListener(this.visibilityListener);
+            this.shown.dispose();
+            this.pulse.remove(this.renderer);
+            this.renderer.dispose();
+        }
+    }
+
+    // windowShown: whether the window with the views is showing and not minimized
+    public PreviewStage(ImageView originalImageView, ImageView maskImageView, ImageView morphImageView,
+                        ObservableBooleanValue windowShown, UiPulse pulse, double originalFps, double maskFps) {
+        this.originalPane = new Pane(originalImageView, windowShown, originalFps, pulse);
+        this.maskPane = new Pane(maskImageView, windowShown, maskFps, pulse);
+        this.morphPane = new Pane(morphImageView, windowShown, maskFps, pulse);
+        this.pulse = pulse;
+    }
+
+    @Override
+    public String name() {
+        return "preview";
+    }
+
+    @Override
+    public boolean process(Frame frame) {
+        if (frame.settings != null && frame.settings != this.shownSettings) {
+            // show the current selected HSV range
+            this.shownSettings = frame.settings;
+            this.pulse.showSettings(frame.settings);
+        }
+        long now = System.nanoTime();
+        // frames where nothing moved or that were tracked have no mask, the panes keep the last one
+        boolean segmented = !frame.unchanged && !frame.tracked;
+        if (segmented && this.maskPane.isDue(now)) {
+            this.maskPane.render(frame.mask, now);
+        }
+        if (segmented && this.morphPane.isDue(now)) {
+            this.morphPane.render(frame.morph, now);
+        }
+        if (this.originalPane.isDue(now)) {
+            // only draw the overlay on frames that are actually shown
+            if (frame.handDetected) {
+                drawDetection(frame);
+            }
+            this.originalPane.render(frame.image, now);
+        }
+        return true;
+    }
+
+    private void drawDetection(Frame frame) {
+        this.contours.clear();
+        this.contours.add(frame.contour);
+        Imgproc.drawContours(frame.image, this.contours, 0, CONTOUR_COLOR, 1);
+
+        Imgproc.circle(frame.image, frame.indexTip, 10, HULL_COLOR, 3);
+
+        //draw hull
+        this.contours.set(0, frame.hull);
+        Imgproc.drawContours(frame.image, this.contours, 0, HULL_COLOR, 3);
+
+        for (int i = 0; i < frame.defectCount; i++) {
+            this.defectStart.x = frame.defectPoints[i * 4];
+            this.defectStart.y = frame.defectPoints[i * 4 + 1];
+            Imgproc.circle(frame.image, this.defectStart, 10, DEFECT_COLOR, 3);
+        }
+    }
+
+    @Override
+    public void close() {
+        this.originalPane.dispose();
+        this.maskPane.dispose();
+        this.morphPane.dispose();
+    }
+}
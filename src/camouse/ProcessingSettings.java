@@ -0,0 +1,61 @@
+package camouse;
+
+import org.opencv.core.Scalar;
+
+/**
+ * Immutable snapshot of the thresholding and morphology settings used for a single frame.
+ */
+public final class ProcessingSettings {
+    // same as the slider defaults in camouse-ui.fxml
+    public static final ProcessingSettings DEFAULTS =
+      new ProcessingSettings(115.7143, 180.0, 62.73809523809525, 180.1190476190476, 163.92857142857144, 255, 0, 0);
+
+    // remember: H ranges 0-180, S and V range 0-255
+    final double hueStart;
+    final double hueEnd;
+    final double saturationStart;
+    final double saturationEnd;
+    final double valueStart;
+    final double valueEnd;
+    final int erodeNum;
+    final int dilateNum;
+    private final Scalar minValues;
+    private final Scalar maxValues;
+
+    public ProcessingSettings(double hueStart, double hueEnd, double saturationStart, double saturationEnd,
+                              double valueStart, double valueEnd, int erodeNum, int dilateNum) {
+        this.hueStart = hueStart;
+        this.hueEnd = hueEnd;
+        this.saturationStart = saturationStart;
+        this.saturationEnd = saturationEnd;
+        this.valueStart = valueStart;
+        this.valueEnd = valueEnd;
+        this.erodeNum = erodeNum;
+        this.dilateNum = dilateNum;
+        this.minValues = new Scalar(hueStart, saturationStart, valueStart);
+        this.maxValues = new Scalar(hueEnd, saturationEnd, valueEnd);
+    }
+
+    public Scalar minValues() {
+        return this.minValues;
+    }
+
+    public Scalar maxValues() {
+        return this.maxValues;
+    }
+
+    public boolean sameAs(double hueStart, double hueEnd, double saturationStart, double saturationEnd,
+                          double valueStart, double valueEnd, int erodeNum, int dilateNum) {
+        return this.hueStart == hueStart && this.hueEnd == hueEnd
+          && this.saturationStart == saturationStart && this.saturationEnd == saturationEnd
+          && this.valueStart == valueStart && this.valueEnd == valueEnd
+          && this.erodeNum == erodeNum && this.dilateNum == dilateNum;
+    }
+
+    @Override
+    public String toString() {
+        return "Hue range: " + this.hueStart + "-" + this.hueEnd
+          + "\tSaturation range: " + this.saturationStart + "-" + this.saturationEnd
+          + "\tValue range: " + this.valueStart + "-" + this.valueEnd;
+    }
+}
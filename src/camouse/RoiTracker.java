@@ -0,0 +1,78 @@
+package camouse;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opencv.core.Rect;
+
+/**
+ * Picks the part of the next frame worth processing: an expanded box around the hand found
+ * in the previous frame, or the whole frame while no hand is known. Written by the detection
+ * stage and read by the preprocess stage, so the box is handed over packed into one atomic long,
+ * which needs no allocation per frame and can never be seen half written.
+ */
+public class RoiTracker {
+    // extra room on every side, relative to the hand size
+    private static final double MARGIN_FACTOR = 0.25;
+    private static final int MIN_MARGIN = 32;
+    // a hand this close to the edge of the searched box may continue outside of it
+    private static final int EDGE_DISTANCE = 2;
+    // x, y, width and height as 16 bit values; frames are far smaller than 65536 pixels
+    private static final long WHOLE_FRAME = -1;
+
+    private final AtomicLong next = new AtomicLong(WHOLE_FRAME);
+
+    // the region to process in the next frame of the given size
+    public void nextRoi(int width, int height, Rect roi) {
+        long next = this.next.get();
+        int x = (int) (next & 0xffff), y = (int) (next >>> 16 & 0xffff);
+        int boxWidth = (int) (next >>> 32 & 0xffff), boxHeight = (int) (next >>> 48);
+        if (next == WHOLE_FRAME || x + boxWidth > width || y + boxHeight > height) {
+            set(roi, 0, 0, width, height);
+        } else {
+            set(roi, x, y, boxWidth, boxHeight);
+        }
+    }
+
+    /**
+     * @param searched the region that was processed
+     * @param found    bounding box of the hand in full-frame coordinates, or null if it was lost
+     */
+    public void update(Rect searched, Rect found, int width, int height) {
+        if (found == null) {
+            // lost: fall back to a full-frame search
+            this.next.set(WHOLE_FRAME);
+            return;
+        }
+        double margin = Math.max(MIN_MARGIN, MARGIN_FACTOR * Math.max(found.width, found.height));
+        if (touchesEdge(searched, found, width, height)) {
+            // the hand may be cut off, look further next time
+            margin *= 2;
+        }
+        int x = (int) Math.max(0, found.x - margin);
+        int y = (int) Math.max(0, found.y - margin);
+        int right = (int) Math.min(width, found.x + found.width + margin);
+        int bottom = (int) Math.min(height, found.y + found.height + margin);
+        this.next.set(x | (long) y << 16 | (long) (right - x) << 32 | (long) (bottom - y) << 48);
+    }
+
+    public void reset() {
+        this.next.set(WHOLE_FRAME);
+    }
+
+    // whether the hand reaches an edge of the searched box that is not also the frame border
+    private static boolean touchesEdge(Rect searched, Rect found, int width, int height) {
+        return (searched.x > 0 && found.x - searched.x <= EDGE_DISTANCE)
+          || (searched.y > 0 && found.y - searched.y <= EDGE_DISTANCE)
+          || (searched.x + searched.width < width
+          && searched.x + searched.width - (found.x + found.width) <= EDGE_DISTANCE)
+          || (searched.y + searched.height < height
+          && searched.y + searched.height - (found.y + found.height) <= EDGE_DISTANCE);
+    }
+
+    private static void set(Rect rect, int x, int y, int width, int height) {
+        rect.x = x;
+        rect.y = y;
+        rect.width = width;
+        rect.height = height;
+    }
+}
@@ -1,75 +1,105 @@
-package camouse;
-import java.awt.*;
-import java.awt.event.InputEvent;
-
-public class ScrollEventTest {
-    private Robot robot;
-    //private static Point p;
-    private int initialX;
-    private int initialY;
-
-    public ScrollEventTest(){
-        try {
-            this.robot = new Robot();
-            robot.setAutoWaitForIdle(true);
-            robot.setAutoDelay(50);
-        } catch (AWTException e) {
-            e.printStackTrace();
-        }
-    }
-
-    public void init(float x, float y){
-        this.initialX = (int)x;
-        this.initialY = (int)y;
-    }
-
-    public void leftClickPress(){
-        this.robot.mousePress(InputEvent.BUTTON1_DOWN_MASK);
-    }
-
-    public void leftClickRelease(){
-        this.robot.mouseRelease(InputEvent.BUTTON1_DOWN_MASK);
-    }
-
-    public void singleClick(){
-        leftClickPress();
-        leftClickRelease();
-    }
-
-    public void doubleClick(){
-        singleClick();
-        singleClick();
-    }
-
-    public void rightClick(){
-        this.robot.mousePress(InputEvent.BUTTON3_DOWN_MASK);
-        this.robot.mouseRelease(InputEvent.BUTTON3_DOWN_MASK);
-    }
-
-    public void scrollDown(){
-        this.robot.mouseWheel(1);
-    }
-
-    public void scrollUp(){
-        this.robot.mouseWheel(-1);
-    }
-
-    public void mouseMovement(float differenceX, float differenceY){
-        //p = MouseInfo.getPointerInfo().getLocation();
-        //robot.mouseMove(p.x+differenceX, p.y+differenceY);
-        int myAdditionX=0;
-        int myAdditionY=0;
-
-        if(Math.abs(differenceX)>3){
-            myAdditionX=(int)differenceX;
-        }
-        if(Math.abs(differenceY)>3){
-            myAdditionY=(int)differenceY;
-        }
-
-        //this.robot.mouseMove((int)(initialX+differenceX), (int)(initialY+differenceY));
-
-        this.robot.mouseMove(initialX+myAdditionX, initialY+myAdditionY);
-    }
-    
-}
+package camouse;
+import java.awt.*;
+import java.awt.event.InputEvent;
+
+/**
+ * Mouse actions for the gestures. All input is handed to an InputDispatcher,
+ * so none of these methods wait for the OS to process the event.
+ */
+public class ScrollEventTest {
+    private Robot robot;
+    private final InputDispatcher dispatcher;
+    //private static Point p;
+    private int initialX;
+    private int initialY;
+
+    public ScrollEventTest(){
+        try {
+            this.robot = new Robot();
+            // the dispatcher paces button events itself, moves should go out immediately
+            robot.setAutoDelay(0);
+        } catch (AWTException e) {
+            e.printStackTrace();
+        }
+        this.dispatcher = new InputDispatcher(this.robot);
+    }
+
+    public void init(float x, float y){
+        this.initialX = (int)x;
+        this.initialY = (int)y;
+    }
+
+    public void leftClickPress(){
+        this.dispatcher.press(InputEvent.BUTTON1_DOWN_MASK);
+    }
+
+    public void leftClickRelease(){
+        this.dispatcher.release(InputEvent.BUTTON1_DOWN_MASK);
+    }
+
+    public void singleClick(){
+        leftClickPress();
+        leftClickRelease();
+    }
+
+    public void doubleClick(){
+        singleClick();
+        singleClick();
+    }
+
+    public void rightClick(){
+        this.dispatcher.press(InputEvent.BUTTON3_DOWN_MASK);
+        this.dispatcher.release(InputEvent.BUTTON3_DOWN_MASK);
+    }
+
+    public void scrollDown(){
+        this.dispatcher.wheel(1);
+    }
+
+    public void scrollUp(){
+        this.dispatcher.wheel(-1);
+    }
+
+    // positive scrolls down
+    public void scroll(int notches){
+        this.dispatcher.wheel(notches);
+    }
+
+    public void mouseMovement(float differenceX, float differenceY){
+        mouseMovement(differenceX, differenceY, System.nanoTime());
+    }
+
+    // captureNanos: when the frame the movement was measured in was captured
+    public void mouseMovement(float differenceX, float differenceY, long captureNanos){
+        //p = MouseInfo.getPointerInfo().getLocation();
+        //robot.mouseMove(p.x+differenceX, p.y+differenceY);
+        int myAdditionX=0;
+        int myAdditionY=0;
+
+        if(Math.abs(differenceX)>3){
+            myAdditionX=(int)differenceX;
+        }
+        if(Math.abs(differenceY)>3){
+            myAdditionY=(int)differenceY;
+        }
+
+        //this.robot.mouseMove((int)(initialX+differenceX), (int)(initialY+differenceY));
+
+        this.dispatcher.moveTo(initialX+myAdditionX, initialY+myAdditionY, captureNanos);
+    }
+
+    // move straight to a screen position, without the dead zone; for already filtered targets
+    public void moveCursor(int x, int y, long captureNanos){
+        this.dispatcher.moveTo(x, y, captureNanos);
+    }
+
+    // record injection time and capture-to-cursor latency into these histograms
+    void setTimings(LatencyHistogram injectTiming, LatencyHistogram glassToCursor){
+        this.dispatcher.setTimings(injectTiming, glassToCursor);
+    }
+
+    public void close(){
+        this.dispatcher.close();
+    }
+    
+}
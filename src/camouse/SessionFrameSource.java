@@ -0,0 +1,123 @@
+package camouse;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.opencv.core.Mat;
+
+/**
+ * Replays the frames of a recorded session, with the gaps between them as recorded or as fast as
+ * they can be decoded. The settings each frame was recorded with are offered to the pipeline, so
+ * slider changes during the session are replayed too. Records without an image are skipped.
+ */
+public class SessionFrameSource implements FrameSource {
+    private final Path path;
+    private final boolean realTime;
+    private final boolean loop;
+    private SessionReader reader;
+    // recorded capture time of the first frame replayed, and when it was replayed
+    private long firstCaptureNanos;
+    private long replayStartNanos;
+    private volatile ProcessingSettings settings;
+
+    public SessionFrameSource(String path, boolean realTime, boolean loop) {
+        this.path = Paths.get(path);
+        this.realTime = realTime;
+        this.loop = loop;
+    }
+
+    @Override
+    public boolean open() {
+        if (this.reader != null) {
+            return true;
+        }
+        try {
+            this.reader = new SessionReader(this.path);
+        } catch (IOException e) {
+            System.err.println("Cannot open the session " + this.path + ": " + e);
+            return false;
+        }
+        if (this.reader.getEncoding() == SessionRecorder.FrameEncoding.NONE) {
+            System.err.println("The session " + this.path + " was recorded without frames");
+        }
+        this.replayStartNanos = 0;
+        return true;
+    }
+
+    @Override
+    public boolean isOpened() {
+        return this.reader != null;
+    }
+
+    @Override
+    public boolean read(Mat frame) {
+        try {
+            if (!nextImage()) {
+                if (!this.loop) {
+                    return false;
+                }
+                this.reader.rewind();
+                this.replayStartNanos = 0;
+                if (!nextImage()) {
+                    return false;
+                }
+            }
+            if (this.replayStartNanos == 0) {
+                this.firstCaptureNanos = this.reader.captureNanos;
+                this.replayStartNanos = System.nanoTime();
+            } else if (this.realTime) {
+                awaitCapture(this.reader.captureNanos);
+            }
+            this.settings = this.reader.settings;
+            return this.reader.readImage(frame) && !frame.empty();
+        } catch (IOException e) {
+            System.err.println("Cannot read the session " + this.path + ": " + e);
+            return false;
+        }
+    }
+
+    private boolean nextImage() throws IOException {
+        while (this.reader.next()) {
+            if (this.reader.hasImage()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // sleep until the frame is as far from the first one as it was when recorded
+    private void awaitCapture(long captureNanos) {
+        long wait = this.replayStartNanos + (captureNanos - this.firstCaptureNanos) - System.nanoTime();
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public ProcessingSettings settings() {
+        return this.settings;
+    }
+
+    @Override
+    public void release() {
+        if (this.reader == null) {
+            return;
+        }
+        try {
+            this.reader.close();
+        } catch (IOException e) {
+            System.err.println("Cannot close the session " + this.path + ": " + e);
+        }
+        this.reader = null;
+    }
+
+    @Override
+    public String toString() {
+        return "session " + this.path;
+    }
+}
@@ -0,0 +1,221 @@
+package camouse;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.imgcodecs.Imgcodecs;
+
+/**
+ * Reads a session written by SessionRecorder one record at a time. The file is mapped a window at
+ * a time, so sessions larger than memory can be read.
+ *
+ * Format (big-endian): a header of int magic, int version, byte frame encoding, byte stage count and
+ * per stage a byte length and the UTF-8 name; then records, each an int length followed by
+ * long sequence, long capture nanos, byte flags, byte gesture events, short scroll notches,
+ * the settings (6 doubles, 2 ints) if flagged, 4 floats index x, y and thumb x, y, byte finger count,
+ * short defect count and per defect 4 shorts (start x, y, valley x, y) and a float depth,
+ * an int per stage with its time in microseconds, and short width, short height, int image length
+ * and the image bytes (BGR or JPEG). A zero length or the end of the file ends the session.
+ */
+public class SessionReader implements AutoCloseable {
+    private static final long WINDOW_SIZE = 256L << 20;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long size;
+    private final SessionRecorder.FrameEncoding encoding;
+    private final List<String> stageNames;
+    private final long firstRecord;
+    private MappedByteBuffer window;
+    private long windowStart;
+    // file offset of the next record
+    private long position;
+
+    // the current record
+    long sequence;
+    long captureNanos;
+    boolean handDetected;
+    boolean thumbExtended;
+    boolean unchanged;
+    boolean tracked;
+    boolean idle;
+    int gestureEvents;
+    int scrollNotches;
+    // carried forward from the last record that had them, null before the first
+    ProcessingSettings settings;
+    final Point indexTip = new Point();
+    final Point thumbTip = new Point();
+    int fingerCount;
+    int defectCount;
+    int[] defectPoints = new int[0];
+    double[] depths = new double[0];
+    final long[] stageNanos;
+    int width;
+    int height;
+    private long imageOffset;
+    private int imageLength;
+    private byte[] imageData = new byte[0];
+    private final Mat encoded = new Mat();
+
+    public SessionReader(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = this.channel.size();
+        map(0, 10);
+        if (this.window.remaining() < 10 || this.window.getInt() != SessionRecorder.MAGIC
+          || this.window.getInt() != SessionRecorder.VERSION) {
+            this.channel.close();
+            throw new IOException("Not a camouse session: " + file);
+        }
+        this.encoding = SessionRecorder.FrameEncoding.values()[this.window.get()];
+        List<String> names = new ArrayList<>();
+        int count = this.window.get() & 0xff;
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[this.window.get() & 0xff];
+            this.window.get(name);
+            names.add(new String(name, StandardCharsets.UTF_8));
+        }
+        this.stageNames = Collections.unmodifiableList(names);
+        this.stageNanos = new long[Math.min(count, Frame.MAX_STAGES)];
+        this.firstRecord = this.position = this.windowStart + this.window.position();
+    }
+
+    public SessionRecorder.FrameEncoding getEncoding() {
+        return this.encoding;
+    }
+
+    // the stages the timings belong to, in pipeline order
+    public List<String> getStageNames() {
+        return this.stageNames;
+    }
+
+    // map at least length bytes from offset, or up to the end of the file
+    private void map(long offset, long length) throws IOException {
+        if (this.window != null && offset >= this.windowStart
+          && offset + length <= this.windowStart + this.window.limit()) {
+            this.window.position((int) (offset - this.windowStart));
+            return;
+        }
+        long mapped = Math.min(Math.max(WINDOW_SIZE, length), this.size - offset);
+        this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, offset, mapped);
+        this.windowStart = offset;
+    }
+
+    /**
+     * Moves to the next record.
+     *
+     * @return false at the end of the session
+     */
+    public boolean next() throws IOException {
+        if (this.position + 4 > this.size) {
+            return false;
+        }
+        map(this.position, 4);
+        int length = this.window.getInt();
+        if (length <= 0 || this.position + 4 + length > this.size) {
+            return false;
+        }
+        map(this.position + 4, length);
+        MappedByteBuffer data = this.window;
+
+        this.sequence = data.getLong();
+        this.captureNanos = data.getLong();
+        int flags = data.get();
+        this.handDetected = (flags & SessionRecorder.HAND) != 0;
+        this.thumbExtended = (flags & SessionRecorder.THUMB_EXTENDED) != 0;
+        this.unchanged = (flags & SessionRecorder.UNCHANGED) != 0;
+        this.tracked = (flags & SessionRecorder.TRACKED) != 0;
+        this.idle = (flags & SessionRecorder.IDLE) != 0;
+        this.gestureEvents = data.get();
+        this.scrollNotches = data.getShort();
+        if ((flags & SessionRecorder.SETTINGS) != 0) {
+            this.settings = new ProcessingSettings(data.getDouble(), data.getDouble(), data.getDouble(),
+              data.getDouble(), data.getDouble(), data.getDouble(), data.getInt(), data.getInt());
+        }
+        this.indexTip.x = data.getFloat();
+        this.indexTip.y = data.getFloat();
+        this.thumbTip.x = data.getFloat();
+        this.thumbTip.y = data.getFloat();
+        this.fingerCount = data.get();
+        this.defectCount = data.getShort();
+        if (this.depths.length < this.defectCount) {
+            this.defectPoints = new int[this.defectCount * 4];
+            this.depths = new double[this.defectCount];
+        }
+        for (int i = 0; i < this.defectCount; i++) {
+            for (int j = 0; j < 4; j++) {
+                this.defectPoints[i * 4 + j] = data.getShort();
+            }
+            this.depths[i] = data.getFloat();
+        }
+        for (int i = 0; i < this.stageNanos.length; i++) {
+            this.stageNanos[i] = data.getInt() * 1000L;
+        }
+        this.width = data.getShort();
+        this.height = data.getShort();
+        this.imageLength = data.getInt();
+        this.imageOffset = this.windowStart + data.position();
+
+        this.position += 4 + length;
+        return true;
+    }
+
+    // whether the current record holds an image
+    public boolean hasImage() {
+        return this.imageLength > 0;
+    }
+
+    /**
+     * Decodes the image of the current record into the Mat.
+     *
+     * @return false if the record has no image
+     */
+    public boolean readImage(Mat image) throws IOException {
+        if (this.imageLength == 0) {
+            return false;
+        }
+        if (this.imageData.length < this.imageLength) {
+            this.imageData = new byte[this.imageLength];
+        }
+        map(this.imageOffset, this.imageLength);
+        this.window.get(this.imageData, 0, this.imageLength);
+        if (this.encoding == SessionRecorder.FrameEncoding.JPEG) {
+            this.encoded.create(1, this.imageLength, CvType.CV_8UC1);
+            this.encoded.put(0, 0, this.imageData, 0, this.imageLength);
+            Mat decoded = Imgcodecs.imdecode(this.encoded, Imgcodecs.IMREAD_COLOR);
+            decoded.copyTo(image);
+            decoded.release();
+        } else {
+            image.create(this.height, this.width, CvType.CV_8UC3);
+            image.put(0, 0, this.imageData, 0, this.imageLength);
+        }
+        return true;
+    }
+
+    // back to the first record
+    public void rewind() {
+        this.position = this.firstRecord;
+        this.settings = null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.encoded.release();
+        this.channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "session " + this.file;
+    }
+}
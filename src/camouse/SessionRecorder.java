@@ -0,0 +1,304 @@
+package camouse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfInt;
+import org.opencv.imgcodecs.Imgcodecs;
+
+/**
+ * Records a tracking session for replay: per frame the image (raw, JPEG or none), the landmarks,
+ * defects, gesture events and stage timings, plus the settings whenever they change.
+ * The stage only copies the frame into one of a few pooled records and queues it; a background
+ * thread encodes the image, assembles the record in a reused direct buffer and appends it to the
+ * file with one channel write. When the writer falls behind, records are dropped instead of stalling
+ * the pipeline. The file is append-only and every record is prefixed with its length, so a session
+ * cut short by a crash is readable up to its last complete record; a reader stops at a record that
+ * reaches past the end of the file.
+ * See SessionReader for the format.
+ */
+public class SessionRecorder implements FrameStage {
+    static final int MAGIC = 0x43414d52;
+    static final int VERSION = 1;
+    // record flags
+    static final int HAND = 1;
+    static final int THUMB_EXTENDED = 2;
+    static final int UNCHANGED = 4;
+    static final int IDLE = 8;
+    static final int SETTINGS = 16;
+    static final int TRACKED = 32;
+
+    // grows to the largest record
+    private static final int BUFFER_SIZE = 1 << 20;
+    // records in flight between the stage and the writer
+    private static final int RECORDS = 4;
+    private static final int JPEG_QUALITY = 90;
+
+    // how frames are stored
+    public enum FrameEncoding { NONE, RAW, JPEG }
+
+    // a frame copied out of the pipeline
+    private static class Record {
+        long sequence;
+        long captureNanos;
+        int flags;
+        int gestureEvents;
+        int scrollNotches;
+        ProcessingSettings settings;
+        float indexX, indexY, thumbX, thumbY;
+        int fingerCount;
+        int defectCount;
+        int[] defectPoints = new int[0];
+        float[] depths = new float[0];
+        final int[] stageMicros = new int[Frame.MAX_STAGES];
+        int width;
+        int height;
+        byte[] pixels = new byte[0];
+    }
+
+    // tells the writer to finish
+    private static final Record END = new Record();
+
+    private final Path file;
+    private final FrameEncoding encoding;
+    private final BlockingQueue<Record> free = new ArrayBlockingQueue<>(RECORDS);
+    private final BlockingQueue<Record> queue = new ArrayBlockingQueue<>(RECORDS + 1);
+    private final LongAdder dropped = new LongAdder();
+    private final FileChannel channel;
+    private final Thread writer;
+    private List<String> stageNames = Collections.emptyList();
+    private ProcessingSettings lastSettings;
+
+    // writer thread only
+    private ByteBuffer buffer;
+    private Mat encodeImage;
+    private final MatOfByte encoded = new MatOfByte();
+    private byte[] encodedData = new byte[0];
+    private final MatOfInt jpegParameters = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, JPEG_QUALITY);
+
+    public SessionRecorder(Path file, FrameEncoding encoding) throws IOException {
+        this.file = file;
+        this.encoding = encoding;
+        for (int i = 0; i < RECORDS; i++) {
+            this.free.add(new Record());
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+        this.writer = new Thread(this::write, "camouse-recorder");
+        this.writer.setDaemon(true);
+    }
+
+    @Override
+    public String name() {
+        return "record";
+    }
+
+    @Override
+    public void attach(PipelineStats stats) {
+        this.stageNames = stats.stageNames();
+        this.writer.start();
+    }
+
+    @Override
+    public boolean process(Frame frame) {
+        Record record = this.free.poll();
+        if (record == null) {
+            this.dropped.increment();
+            return true;
+        }
+        copy(frame, record);
+        this.queue.add(record);
+        return true;
+    }
+
+    private void copy(Frame frame, Record record) {
+        record.sequence = frame.sequence;
+        record.captureNanos = frame.captureNanos;
+        record.flags = (frame.handDetected ? HAND : 0) | (frame.thumbExtended ? THUMB_EXTENDED : 0)
+          | (frame.unchanged ? UNCHANGED : 0) | (frame.idle ? IDLE : 0) | (frame.tracked ? TRACKED : 0);
+        // settings are stored when they change, the reader carries them forward
+        record.settings = null;
+        if (frame.settings != null && frame.settings != this.lastSettings) {
+            record.settings = frame.settings;
+            record.flags |= SETTINGS;
+            this.lastSettings = frame.settings;
+        }
+        record.gestureEvents = frame.gestureEvents;
+        record.scrollNotches = frame.scrollNotches;
+        record.indexX = (float) frame.indexTip.x;
+        record.indexY = (float) frame.indexTip.y;
+        record.thumbX = (float) frame.thumbTip.x;
+        record.thumbY = (float) frame.thumbTip.y;
+        record.fingerCount = frame.fingerCount;
+        record.defectCount = frame.defectCount;
+        if (record.depths.length < frame.defectCount) {
+            record.defectPoints = new int[frame.defectPoints.length];
+            record.depths = new float[frame.depths.length];
+        }
+        System.arraycopy(frame.defectPoints, 0, record.defectPoints, 0, frame.defectCount * 4);
+        for (int i = 0; i < frame.defectCount; i++) {
+            record.depths[i] = (float) frame.depths[i];
+        }
+        for (int i = 0; i < Frame.MAX_STAGES; i++) {
+            record.stageMicros[i] = (int) Math.min(frame.stageNanos[i] / 1000, Integer.MAX_VALUE);
+        }
+        record.width = record.height = 0;
+        if (this.encoding != FrameEncoding.NONE && !frame.image.empty()) {
+            int size = (int) (frame.image.total() * frame.image.channels());
+            if (record.pixels.length < size) {
+                record.pixels = new byte[size];
+            }
+            frame.image.get(0, 0, record.pixels);
+            record.width = frame.image.cols();
+            record.height = frame.image.rows();
+        }
+    }
+
+    // writer thread: append queued records until told to stop
+    private void write() {
+        try {
+            writeHeader();
+            while (true) {
+                Record record = this.queue.take();
+                if (record == END) {
+                    break;
+                }
+                writeRecord(record);
+                this.free.add(record);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("Cannot write the session to " + this.file + ": " + e);
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        byte[][] names = new byte[this.stageNames.size()][];
+        int size = 4 + 4 + 1 + 1;
+        for (int i = 0; i < names.length; i++) {
+            names[i] = this.stageNames.get(i).getBytes(StandardCharsets.UTF_8);
+            size += 1 + names[i].length;
+        }
+        ensure(size);
+        this.buffer.putInt(MAGIC).putInt(VERSION).put((byte) this.encoding.ordinal()).put((byte) names.length);
+        for (byte[] name : names) {
+            this.buffer.put((byte) name.length).put(name);
+        }
+        flush();
+    }
+
+    private void writeRecord(Record record) throws IOException {
+        byte[] image = record.pixels;
+        int imageLength = record.width * record.height * 3;
+        if (record.width > 0 && this.encoding == FrameEncoding.JPEG) {
+            if (this.encodeImage == null) {
+                this.encodeImage = new Mat();
+            }
+            this.encodeImage.create(record.height, record.width, CvType.CV_8UC3);
+            this.encodeImage.put(0, 0, record.pixels, 0, imageLength);
+            Imgcodecs.imencode(".jpg", this.encodeImage, this.encoded, this.jpegParameters);
+            imageLength = (int) this.encoded.total();
+            if (this.encodedData.length < imageLength) {
+                this.encodedData = new byte[imageLength];
+            }
+            this.encoded.get(0, 0, this.encodedData);
+            image = this.encodedData;
+        }
+        int stages = Math.min(this.stageNames.size(), Frame.MAX_STAGES);
+
+        int size = 4 + 8 + 8 + 1 + 1 + 2 + 4 * 4 + 1 + 2 + record.defectCount * (4 * 2 + 4) + stages * 4
+          + 2 + 2 + 4 + imageLength;
+        if ((record.flags & SETTINGS) != 0) {
+            size += 6 * 8 + 2 * 4;
+        }
+        ensure(size);
+
+        // the length is known once the record is assembled
+        this.buffer.putInt(0);
+        this.buffer.putLong(record.sequence).putLong(record.captureNanos);
+        this.buffer.put((byte) record.flags).put((byte) record.gestureEvents).putShort((short) record.scrollNotches);
+        if (record.settings != null) {
+            ProcessingSettings settings = record.settings;
+            this.buffer.putDouble(settings.hueStart).putDouble(settings.hueEnd);
+            this.buffer.putDouble(settings.saturationStart).putDouble(settings.saturationEnd);
+            this.buffer.putDouble(settings.valueStart).putDouble(settings.valueEnd);
+            this.buffer.putInt(settings.erodeNum).putInt(settings.dilateNum);
+        }
+        this.buffer.putFloat(record.indexX).putFloat(record.indexY).putFloat(record.thumbX).putFloat(record.thumbY);
+        this.buffer.put((byte) record.fingerCount).putShort((short) record.defectCount);
+        for (int i = 0; i < record.defectCount; i++) {
+            for (int j = 0; j < 4; j++) {
+                this.buffer.putShort((short) record.defectPoints[i * 4 + j]);
+            }
+            this.buffer.putFloat(record.depths[i]);
+        }
+        for (int i = 0; i < stages; i++) {
+            this.buffer.putInt(record.stageMicros[i]);
+        }
+        this.buffer.putShort((short) record.width).putShort((short) record.height).putInt(record.width > 0 ? imageLength : 0);
+        if (record.width > 0) {
+            this.buffer.put(image, 0, imageLength);
+        }
+        this.buffer.putInt(0, this.buffer.position() - 4);
+        flush();
+    }
+
+    // an empty buffer with room for the next write
+    private void ensure(int size) {
+        if (this.buffer == null || this.buffer.capacity() < size) {
+            this.buffer = ByteBuffer.allocateDirect(Math.max(size, this.buffer == null ? BUFFER_SIZE
+              : 2 * this.buffer.capacity()));
+        }
+        this.buffer.clear();
+    }
+
+    // append what was put into the buffer
+    private void flush() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+    }
+
+    // frames that were not recorded because the writer was behind
+    public long getDropped() {
+        return this.dropped.sum();
+    }
+
+    // wait for the queued records to be written
+    @Override
+    public void close() {
+        try {
+            if (this.writer.isAlive()) {
+                this.queue.put(END);
+                this.writer.join();
+            }
+            this.channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("Cannot close the session " + this.file + ": " + e);
+        }
+        if (this.encodeImage != null) {
+            this.encodeImage.release();
+        }
+        this.encoded.release();
+        this.jpegParameters.release();
+        if (this.dropped.sum() > 0) {
+            System.out.println("Session " + this.file + ": " + this.dropped.sum() + " frames not recorded");
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package camouse;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs one pipeline stage on a shared executor instead of a thread of its own. Frames arrive
+ * through a drop-oldest buffer; the stage is scheduled one frame per task while it has input,
+ * so it never runs on two threads at once, and stages of several pipelines take turns fairly
+ * on the same pool threads.
+ */
+class StageWorker {
+    private final FrameStage stage;
+    // position in the pipeline
+    private final int index;
+    private final FrameBuffer input;
+    // null for the last stage
+    private final StageWorker next;
+    private final Executor executor;
+    private final FramePipeline pipeline;
+    private final PipelineStats stats;
+    private final LatencyHistogram timing;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean running = true;
+
+    StageWorker(FrameStage stage, int index, FrameBuffer input, StageWorker next, Executor executor,
+                FramePipeline pipeline) {
+        this.stage = stage;
+        this.index = index;
+        this.input = input;
+        this.next = next;
+        this.executor = executor;
+        this.pipeline = pipeline;
+        this.stats = pipeline.getStats();
+        this.timing = this.stats.histogram(stage.name());
+    }
+
+    // hand over a frame, replacing one that is still waiting
+    void offer(Frame frame) {
+        this.input.offer(frame);
+        schedule();
+    }
+
+    private void schedule() {
+        if (this.running && this.scheduled.compareAndSet(false, true)) {
+            try {
+                this.executor.execute(this::runOnce);
+            } catch (RejectedExecutionException e) {
+                // the executor is shutting down
+                this.scheduled.set(false);
+            }
+        }
+    }
+
+    private void runOnce() {
+        try {
+            Frame frame = this.input.poll();
+            if (frame != null && this.running) {
+                process(frame);
+            } else if (frame != null) {
+                frame.release();
+            }
+        } finally {
+            this.scheduled.set(false);
+        }
+        // a frame may have arrived while this one was processed
+        if (!this.input.isEmpty()) {
+            schedule();
+        }
+    }
+
+    private void process(Frame frame) {
+        boolean keep = false;
+        long start = System.nanoTime();
+        try {
+            keep = this.stage.process(frame);
+        } catch (Exception e) {
+            // log the (full) error
+            System.err.print("Exception during the image elaboration in stage " + this.stage.name() + "...");
+            e.printStackTrace();
+        }
+        long end = System.nanoTime();
+        this.timing.record(end - start);
+        if (this.index < Frame.MAX_STAGES) {
+            frame.stageNanos[this.index] = end - start;
+        }
+        this.stats.recordSteps(frame);
+        if (keep && this.next != null) {
+            this.next.offer(frame);
+        } else {
+            this.pipeline.finished(frame, end);
+            frame.release();
+        }
+    }
+
+    // stop taking frames and wait for the one being processed; false on timeout
+    boolean stop(long timeoutMs) {
+        this.running = false;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (this.scheduled.get()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,170 @@
+package camouse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.opencv.core.Core;
+
+/**
+ * Brings the app up with the slow parts side by side instead of one after the other: the OpenCV
+ * natives, followed by opening the sources and a warm-up run of the tracking stages; the mouse
+ * Robot; and, in the UI, loading the FXML. The warm-up pushes synthetic hand frames through
+ * preprocessing and detection so the first live frames do not run through cold code.
+ * When each part was ready is recorded from the start of main and printed together with the time
+ * to the first tracked frame and that frame's latency.
+ */
+public class Startup implements FramePipeline.FirstFrameListener {
+    private static final int THREADS = 3;
+    private static final int WARMUP_WIDTH = 640;
+    private static final int WARMUP_HEIGHT = 480;
+
+    private final long startNanos = System.nanoTime();
+    private final TrackerOptions options;
+    private final ExecutorService executor;
+    // phase name -> when it was ready, in order of completion
+    private final Map<String, Long> phases = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final CompletableFuture<List<FrameSource>> sources;
+    private final CompletableFuture<ScrollEventTest> scroller;
+    private final CompletableFuture<Void> warmUp;
+    private final AtomicBoolean reported = new AtomicBoolean();
+    // processing time of the first and last warm-up frame
+    private volatile long firstWarmUpNanos;
+    private volatile long lastWarmUpNanos;
+
+    private Startup(List<String> args, TrackerOptions options) {
+        this.options = options;
+        this.executor = FramePipeline.newWorkerPool(THREADS, "camouse-startup-");
+        CompletableFuture<Void> natives = CompletableFuture.runAsync(() -> {
+            // load the native OpenCV library
+            System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+            ready("natives");
+        }, this.executor);
+        this.sources = natives.thenApplyAsync(ignored -> openSources(args), this.executor);
+        this.warmUp = natives.thenRunAsync(this::warmUp, this.executor);
+        this.scroller = CompletableFuture.supplyAsync(() -> {
+            ScrollEventTest scroller = new ScrollEventTest();
+            ready("input");
+            return scroller;
+        }, this.executor);
+        CompletableFuture.allOf(this.sources, this.warmUp, this.scroller)
+          .whenComplete((ignored, error) -> this.executor.shutdown());
+    }
+
+    // start everything that does not need the UI
+    public static Startup begin(List<String> args, TrackerOptions options) {
+        return new Startup(args, options);
+    }
+
+    public TrackerOptions options() {
+        return this.options;
+    }
+
+    // completes once the sources, the dispatcher and the warm-up are ready, or with the first failure
+    public CompletableFuture<Void> whenReady() {
+        return CompletableFuture.allOf(this.sources, this.warmUp, this.scroller);
+    }
+
+    // the failure itself rather than the CompletionException wrapped around it
+    public static Throwable cause(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    // the sources, opened if they could be; blocks until they are
+    public List<FrameSource> sources() {
+        return this.sources.join();
+    }
+
+    public ScrollEventTest scroller() {
+        return this.scroller.join();
+    }
+
+    // blocks until the warm-up is done, call before starting the live pipeline; the UI uses whenReady instead
+    public void awaitWarmUp() {
+        this.warmUp.join();
+    }
+
+    // a part of the startup is ready
+    public void ready(String phase) {
+        this.phases.put(phase, System.nanoTime());
+    }
+
+    private List<FrameSource> openSources(List<String> args) {
+        List<FrameSource> sources = Camouse.frameSources(args);
+        for (FrameSource source : sources) {
+            // a source that fails here is tried again, and reported, when tracking starts
+            source.open();
+        }
+        ready("sources");
+        return sources;
+    }
+
+    // run the tracking stages on synthetic frames until the hot paths are compiled
+    private void warmUp() {
+        int frames = this.options.warmUpFrames;
+        if (frames <= 0) {
+            return;
+        }
+        FrameSource source = new SyntheticHandSource(WARMUP_WIDTH, WARMUP_HEIGHT, false);
+        List<FrameStage> stages = this.options.detectionStages(() -> ProcessingSettings.DEFAULTS);
+        Frame frame = new Frame(null);
+        try {
+            source.open();
+            for (int i = 0; i < frames; i++) {
+                frame.reset(i);
+                if (!source.read(frame.image)) {
+                    break;
+                }
+                long start = System.nanoTime();
+                frame.captureNanos = start;
+                for (FrameStage stage : stages) {
+                    stage.process(frame);
+                }
+                long elapsed = System.nanoTime() - start;
+                if (i == 0) {
+                    this.firstWarmUpNanos = elapsed;
+                }
+                this.lastWarmUpNanos = elapsed;
+            }
+        } catch (Exception e) {
+            // tracking works without it, only the first frames are slower
+            System.err.print("Exception during the warm-up...");
+            e.printStackTrace();
+        } finally {
+            for (FrameStage stage : stages) {
+                stage.close();
+            }
+            frame.dispose();
+            source.release();
+        }
+        ready("warm-up");
+    }
+
+    @Override
+    public void firstFrame(long trackingNanos, Frame frame, long now) {
+        if (!this.reported.compareAndSet(false, true)) {
+            return;
+        }
+        List<String> parts = new ArrayList<>();
+        synchronized (this.phases) {
+            for (Map.Entry<String, Long> phase : this.phases.entrySet()) {
+                parts.add(phase.getKey() + " " + millis(phase.getValue() - this.startNanos));
+            }
+        }
+        String warmUp = this.lastWarmUpNanos == 0 ? ""
+          : " (warm-up frames " + millis(this.firstWarmUpNanos) + " -> " + millis(this.lastWarmUpNanos) + ")";
+        System.out.println("Startup: " + String.join(", ", parts) + warmUp
+          + "; first frame tracked " + millis(now - this.startNanos) + " after launch, "
+          + millis(now - trackingNanos) + " after tracking started, latency " + millis(now - frame.captureNanos));
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f ms", nanos / 1e6);
+    }
+}
@@ -0,0 +1,88 @@
+package camouse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Publishes the timings of a running pipeline: a short summary of the last second for the UI
+ * and, if a file is given, one JSON line per interval appended to it. Runs on its own daemon
+ * thread so reporting never slows down the pipeline.
+ */
+public class StatsReporter {
+    private static final long LABEL_INTERVAL_MS = 1000;
+    private static final long FILE_INTERVAL_MS = 10000;
+
+    private final PipelineStats stats;
+    // null when there is nothing to show the summary in
+    private final Consumer<String> label;
+    // null to keep the numbers in memory only
+    private final Path file;
+    private ScheduledExecutorService timer;
+    private PipelineStats.Snapshot lastLabel;
+    private PipelineStats.Snapshot lastFile;
+
+    public StatsReporter(PipelineStats stats, Consumer<String> label, Path file) {
+        this.stats = stats;
+        this.label = label;
+        this.file = file;
+    }
+
+    public void start() {
+        this.lastLabel = this.lastFile = this.stats.snapshot();
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "camouse-stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (this.label != null) {
+            this.timer.scheduleAtFixedRate(this::updateLabel, LABEL_INTERVAL_MS, LABEL_INTERVAL_MS,
+              TimeUnit.MILLISECONDS);
+        }
+        if (this.file != null) {
+            this.timer.scheduleAtFixedRate(this::writeFile, FILE_INTERVAL_MS, FILE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void updateLabel() {
+        PipelineStats.Snapshot now = this.stats.snapshot();
+        this.label.accept(now.since(this.lastLabel).toLabel());
+        this.lastLabel = now;
+    }
+
+    private void writeFile() {
+        PipelineStats.Snapshot now = this.stats.snapshot();
+        String line = now.since(this.lastFile).toJson(System.currentTimeMillis());
+        this.lastFile = now;
+        try {
+            Files.write(this.file, Collections.singletonList(line), StandardCharsets.UTF_8,
+              StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Cannot write the pipeline statistics to " + this.file + ": " + e);
+        }
+    }
+
+    // stop reporting; the last partial interval still goes to the file
+    public void stop() {
+        if (this.timer == null) {
+            return;
+        }
+        this.timer.shutdown();
+        try {
+            this.timer.awaitTermination(LABEL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.file != null) {
+            writeFile();
+        }
+        this.timer = null;
+    }
+}
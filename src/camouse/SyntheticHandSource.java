@@ -0,0 +1,197 @@
+package camouse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Renders a glove-colored hand following a scripted list of poses, so the pipeline can be
+ * profiled and regression-tested on machines without a camera. The pose that was drawn
+ * is kept as ground truth.
+ */
+public class SyntheticHandSource implements FrameSource {
+    private static final double FPS = 30;
+    private static final Scalar BACKGROUND = new Scalar(40, 40, 40);
+    // hand proportions at 480 lines; scaled with the frame height
+    private static final double FINGER_WIDTH = 36;
+    private static final double FINGER_LENGTH = 110;
+    private static final double PALM_WIDTH = 150;
+    private static final double PALM_HEIGHT = 180;
+
+    /**
+     * Where the index finger tip is and whether the thumb is out. The hand moves linearly
+     * from one pose to the next over the given number of frames.
+     */
+    public static class Pose {
+        final double indexX;
+        final double indexY;
+        final boolean thumbExtended;
+        final int frames;
+
+        public Pose(double indexX, double indexY, boolean thumbExtended, int frames) {
+            this.indexX = indexX;
+            this.indexY = indexY;
+            this.thumbExtended = thumbExtended;
+            this.frames = frames;
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final boolean realTime;
+    private final List<Pose> script;
+    private final double scale;
+    private Scalar gloveColor;
+    private FramePacer pacer;
+    private boolean opened;
+    private int poseIndex;
+    private int poseFrame;
+
+    // ground truth of the last rendered frame
+    private final Point indexTip = new Point();
+    private boolean thumbExtended;
+
+    // reused drawing points
+    private final Point p1 = new Point();
+    private final Point p2 = new Point();
+
+    public SyntheticHandSource(int width, int height, boolean realTime) {
+        this(width, height, realTime, defaultScript(width, height));
+    }
+
+    public SyntheticHandSource(int width, int height, boolean realTime, List<Pose> script) {
+        this.width = width;
+        this.height = height;
+        this.realTime = realTime;
+        this.script = new ArrayList<>(script);
+        this.scale = height / 480.0;
+    }
+
+    // point around the middle of the frame, move, click, move back, long press
+    public static List<Pose> defaultScript(int width, int height) {
+        double cx = width * 0.45, cy = height * 0.3;
+        double dx = width * 0.15, dy = height * 0.08;
+        List<Pose> script = new ArrayList<>();
+        script.add(new Pose(cx, cy, true, 30));
+        script.add(new Pose(cx + dx, cy - dy, true, 45));
+        script.add(new Pose(cx + dx, cy - dy, false, 10));
+        script.add(new Pose(cx + dx, cy - dy, true, 15));
+        script.add(new Pose(cx - dx, cy + dy, true, 60));
+        script.add(new Pose(cx - dx, cy + dy, false, 75));
+        script.add(new Pose(cx, cy, true, 30));
+        return script;
+    }
+
+    @Override
+    public boolean open() {
+        // the middle of the default HSV range, converted back to BGR
+        ProcessingSettings settings = ProcessingSettings.DEFAULTS;
+        Mat hsv = new Mat(1, 1, CvType.CV_8UC3, new Scalar((settings.hueStart + settings.hueEnd) / 2,
+          (settings.saturationStart + settings.saturationEnd) / 2, (settings.valueStart + settings.valueEnd) / 2));
+        Mat bgr = new Mat();
+        Imgproc.cvtColor(hsv, bgr, Imgproc.COLOR_HSV2BGR);
+        this.gloveColor = new Scalar(bgr.get(0, 0));
+        hsv.release();
+        bgr.release();
+
+        this.pacer = new FramePacer(FPS);
+        this.poseIndex = 0;
+        this.poseFrame = 0;
+        this.opened = true;
+        return true;
+    }
+
+    @Override
+    public boolean isOpened() {
+        return this.opened;
+    }
+
+    @Override
+    public boolean read(Mat frame) {
+        if (!this.opened) {
+            return false;
+        }
+        if (this.realTime) {
+            this.pacer.awaitNextFrame();
+        }
+        advance();
+        frame.create(this.height, this.width, CvType.CV_8UC3);
+        frame.setTo(BACKGROUND);
+        drawHand(frame);
+        return true;
+    }
+
+    // interpolate the pose for the next frame
+    private void advance() {
+        Pose from = this.script.get(this.poseIndex);
+        Pose to = this.script.get((this.poseIndex + 1) % this.script.size());
+        double t = (double) this.poseFrame / from.frames;
+        this.indexTip.x = from.indexX + (to.indexX - from.indexX) * t;
+        this.indexTip.y = from.indexY + (to.indexY - from.indexY) * t;
+        this.thumbExtended = from.thumbExtended;
+
+        if (++this.poseFrame >= from.frames) {
+            this.poseFrame = 0;
+            this.poseIndex = (this.poseIndex + 1) % this.script.size();
+        }
+    }
+
+    private void drawHand(Mat frame) {
+        double x = this.indexTip.x, y = this.indexTip.y, s = this.scale;
+        double fingerRadius = FINGER_WIDTH * s / 2;
+
+        // index finger with a round tip whose top is the ground truth point
+        set(this.p1, x, y + fingerRadius);
+        Imgproc.circle(frame, this.p1, (int) Math.round(fingerRadius), this.gloveColor, -1);
+        set(this.p1, x - fingerRadius, y + fingerRadius);
+        set(this.p2, x + fingerRadius, y + fingerRadius + FINGER_LENGTH * s);
+        Imgproc.rectangle(frame, this.p1, this.p2, this.gloveColor, -1);
+
+        // palm, with the other fingers folded into knuckles
+        double palmTop = y + fingerRadius + FINGER_LENGTH * s;
+        set(this.p1, x - fingerRadius - 4 * s, palmTop);
+        set(this.p2, x - fingerRadius + PALM_WIDTH * s, palmTop + PALM_HEIGHT * s);
+        Imgproc.rectangle(frame, this.p1, this.p2, this.gloveColor, -1);
+        for (int i = 1; i <= 3; i++) {
+            set(this.p1, x + i * 30 * s, palmTop);
+            Imgproc.circle(frame, this.p1, (int) Math.round(16 * s), this.gloveColor, -1);
+        }
+
+        // thumb sticking out to the side, below the index tip
+        if (this.thumbExtended) {
+            set(this.p1, x - fingerRadius, palmTop + 60 * s);
+            set(this.p2, x - fingerRadius - 90 * s, palmTop + 10 * s);
+            Imgproc.line(frame, this.p1, this.p2, this.gloveColor, (int) Math.round(FINGER_WIDTH * s));
+            Imgproc.circle(frame, this.p2, (int) Math.round(fingerRadius), this.gloveColor, -1);
+        }
+    }
+
+    private static void set(Point point, double x, double y) {
+        point.x = x;
+        point.y = y;
+    }
+
+    // ground truth for the last frame read
+    public Point getIndexTip() {
+        return this.indexTip;
+    }
+
+    public boolean isThumbExtended() {
+        return this.thumbExtended;
+    }
+
+    @Override
+    public void release() {
+        this.opened = false;
+    }
+
+    @Override
+    public String toString() {
+        return "synthetic hand " + this.width + "x" + this.height;
+    }
+}
@@ -0,0 +1,122 @@
+package camouse;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Puts back the precision lost by segmenting a downscaled frame: re-runs the preprocessing at
+ * full resolution on a small window around the candidate index tip and moves the tip to the
+ * top-most glove pixel nearby.
+ */
+public class TipRefiner {
+    private final Size blurSize = new Size(PreprocessStage.BLUR_SIZE, PreprocessStage.BLUR_SIZE);
+    private final Rect window = new Rect();
+    private final Rect padded = new Rect();
+    private final Mat blurred = new Mat();
+    private final Mat hsv = new Mat();
+    private final Mat mask = new Mat();
+    private final Mat morph = new Mat();
+    private Mat dilateElement;
+    private Mat erodeElement;
+    private byte[] maskData = new byte[0];
+    // null when the frames are segmented through HSV
+    private final ColorLut colorLut;
+
+    public TipRefiner() {
+        this(null);
+    }
+
+    public TipRefiner(ColorLut colorLut) {
+        this.colorLut = colorLut;
+    }
+
+    /**
+     * @return false if no glove pixel was found near the candidate, which is then left as it is
+     */
+    public boolean refine(Frame frame) {
+        if (this.dilateElement == null) {
+            this.dilateElement = PreprocessStage.structuringElement(PreprocessStage.DILATE_SIZE);
+            this.erodeElement = PreprocessStage.structuringElement(PreprocessStage.ERODE_SIZE);
+        }
+        int width = frame.image.cols(), height = frame.image.rows();
+        // the true tip is within a couple of low resolution pixels of the candidate
+        int radius = 3 * frame.scale;
+        int tipX = (int) frame.indexTip.x, tipY = (int) frame.indexTip.y;
+        clamp(this.window, tipX - radius, tipY - radius, tipX + radius + 1, tipY + radius + 1, width, height);
+        int padding = padding(frame.settings);
+        clamp(this.padded, this.window.x - padding, this.window.y - padding,
+          this.window.x + this.window.width + padding, this.window.y + this.window.height + padding, width, height);
+        if (this.window.width <= 0 || this.window.height <= 0) {
+            return false;
+        }
+
+        // same steps as the preprocess stage, at full resolution; blurring a submat reads the pixels around it
+        Mat image = frame.image.submat(this.padded);
+        if (this.colorLut != null) {
+            this.mask.create(image.rows(), image.cols(), CvType.CV_8UC1);
+            this.colorLut.classify(frame.settings, image, this.mask);
+        } else {
+            Imgproc.blur(image, this.blurred, this.blurSize);
+            Imgproc.cvtColor(this.blurred, this.hsv, Imgproc.COLOR_BGR2HSV);
+            Core.inRange(this.hsv, frame.settings.minValues(), frame.settings.maxValues(), this.mask);
+        }
+        image.release();
+        PreprocessStage.morphology(frame.settings, this.mask, this.morph, this.erodeElement, this.dilateElement);
+
+        // the first row of the window with glove in it, and in it the pixel closest to the candidate
+        int stride = this.morph.cols();
+        int offsetX = this.window.x - this.padded.x, offsetY = this.window.y - this.padded.y;
+        if (this.maskData.length < this.morph.total()) {
+            this.maskData = new byte[(int) this.morph.total()];
+        }
+        this.morph.get(0, 0, this.maskData);
+        for (int row = 0; row < this.window.height; row++) {
+            int start = (offsetY + row) * stride + offsetX;
+            int best = -1;
+            for (int col = 0; col < this.window.width; col++) {
+                if (this.maskData[start + col] != 0 && (best < 0
+                  || Math.abs(this.window.x + col - tipX) < Math.abs(this.window.x + best - tipX))) {
+                    best = col;
+                }
+            }
+            if (best >= 0) {
+                frame.indexTip.x = this.window.x + best;
+                frame.indexTip.y = this.window.y + row;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the context the morphology needs around the window to give the same result as on a full frame:
+    // every erosion and dilation reaches half its element further, and each runs at least once
+    static int padding(ProcessingSettings settings) {
+        return Math.max(1, settings.erodeNum) * (PreprocessStage.ERODE_SIZE / 2)
+          + Math.max(1, settings.dilateNum) * (PreprocessStage.DILATE_SIZE / 2);
+    }
+
+    private static void clamp(Rect rect, int left, int top, int right, int bottom, int width, int height) {
+        rect.x = Math.max(0, left);
+        rect.y = Math.max(0, top);
+        rect.width = Math.min(width, right) - rect.x;
+        rect.height = Math.min(height, bottom) - rect.y;
+    }
+
+    public void dispose() {
+        this.blurred.release();
+        this.hsv.release();
+        this.mask.release();
+        this.morph.release();
+        if (this.colorLut != null) {
+            this.colorLut.dispose();
+        }
+        if (this.dilateElement != null) {
+            this.dilateElement.release();
+            this.erodeElement.release();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package camouse;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Switches for the optional parts of the tracking pipeline, read from the command line.
+ */
+public class TrackerOptions {
+    // read by Camouse from the same command line: --source=, --camera=, --resolution=, --fast, --loop, --headless
+    private static final List<String> APP_OPTIONS = List.of("--source=", "--camera=", "--resolution=");
+    private static final List<String> APP_FLAGS = List.of("--fast", "--loop", "--headless");
+
+    // only process the region around the last known hand position
+    boolean roiTracking = true;
+    // segment at 1/scale of the camera resolution
+    int pyramidScale = 1;
+    // classify BGR pixels through a lookup table instead of blur + HSV + inRange
+    boolean colorLut;
+    // clean up the table's mask with a majority vote
+    boolean maskDenoise = true;
+    // pass frames where nothing moved on without segmenting them
+    boolean stillSkip = true;
+    // segment one frame in this many while the hand is tracked by optical flow, 0 or 1 to segment every frame
+    int trackInterval;
+    // drop to a low resolution and rate after this long without a hand, 0 to never
+    long idleAfterMs = 10000;
+    // pick the hand as the connected component with the most pixels, cheaper with many small blobs
+    boolean largestComponent;
+    // synthetic frames to run through the stages at startup, 0 for none
+    int warmUpFrames = 60;
+    // where to append the pipeline timings, null for none
+    Path statsFile;
+    // where to record the session, null for none, and how to store its frames
+    Path recordFile;
+    SessionRecorder.FrameEncoding recordFrames = SessionRecorder.FrameEncoding.JPEG;
+    // filter the cursor and move it at cursorRate Hz; otherwise once per frame with a 3 pixel dead zone
+    boolean smoothing = true;
+    double cursorRate = 120;
+    // One Euro filter: cutoff in Hz while still, and how quickly it opens up with speed
+    double minCutoff = 1.0;
+    double beta = 0.02;
+    final GestureConfig gestures = new GestureConfig();
+    // calibration to start from and to save to, null for none
+    String profileName = "default";
+    Path profileDirectory = CalibrationProfile.defaultDirectory();
+    // guarded by this: the startup threads and the FX thread both ask for the profile
+    private CalibrationProfile profile;
+    private boolean profileLoaded;
+
+    // --no-roi, --scale=1|2|4, --lut, --no-denoise, --components, --no-still-skip, --track=N, --idle-after=<s>,
+    // --warm-up=<frames>, --stats=<file>, --record=<file>, --record-frames=raw|jpeg|none,
+    // --profile=<name>, --profiles=<dir>, --no-profile,
+    // --no-smoothing, --cursor-rate=<Hz>, --min-cutoff=<Hz>, --beta=<value>,
+    // --press-frames=N, --release-frames=N, --long-press=<ms>, --double-click=<ms>, --scroll-step=<px>
+    public static TrackerOptions fromArgs(List<String> args) {
+        TrackerOptions options = new TrackerOptions();
+        for (String arg : args) {
+            if (arg.equals("--no-roi")) {
+                options.roiTracking = false;
+            } else if (arg.startsWith("--scale=")) {
+                options.pyramidScale = Integer.parseInt(arg.substring("--scale=".length()));
+                if (options.pyramidScale < 1) {
+                    throw new IllegalArgumentException("Scale must be at least 1: " + arg);
+                }
+            } else if (arg.equals("--lut")) {
+                options.colorLut = true;
+            } else if (arg.equals("--no-denoise")) {
+                options.maskDenoise = false;
+            } else if (arg.equals("--components")) {
+                options.largestComponent = true;
+            } else if (arg.equals("--no-still-skip")) {
+                options.stillSkip = false;
+            } else if (arg.startsWith("--track=")) {
+                options.trackInterval = Integer.parseInt(arg.substring("--track=".length()));
+            } else if (arg.startsWith("--idle-after=")) {
+                options.idleAfterMs = Math.round(1000 * Double.parseDouble(arg.substring("--idle-after=".length())));
+            } else if (arg.startsWith("--warm-up=")) {
+                options.warmUpFrames = Integer.parseInt(arg.substring("--warm-up=".length()));
+            } else if (arg.startsWith("--stats=")) {
+                options.statsFile = Paths.get(arg.substring("--stats=".length()));
+            } else if (arg.startsWith("--record=")) {
+                options.recordFile = Paths.get(arg.substring("--record=".length()));
+            } else if (arg.startsWith("--record-frames=")) {
+                options.recordFrames = SessionRecorder.FrameEncoding.valueOf(
+                  arg.substring("--record-frames=".length()).toUpperCase(Locale.ROOT));
+            } else if (arg.startsWith("--profile=")) {
+                options.profileName = arg.substring("--profile=".length());
+            } else if (arg.startsWith("--profiles=")) {
+                options.profileDirectory = Paths.get(arg.substring("--profiles=".length()));
+            } else if (arg.equals("--no-profile")) {
+                options.profileName = null;
+            } else if (arg.equals("--no-smoothing")) {
+                options.smoothing = false;
+            } else if (arg.startsWith("--cursor-rate=")) {
+                options.cursorRate = Double.parseDouble(arg.substring("--cursor-rate=".length()));
+                if (options.cursorRate <= 0) {
+                    throw new IllegalArgumentException("Cursor rate must be positive: " + arg);
+                }
+            } else if (arg.startsWith("--min-cutoff=")) {
+                options.minCutoff = Double.parseDouble(arg.substring("--min-cutoff=".length()));
+            } else if (arg.startsWith("--beta=")) {
+                options.beta = Double.parseDouble(arg.substring("--beta=".length()));
+            } else if (arg.startsWith("--press-frames=")) {
+                options.gestures.pressFrames = Integer.parseInt(arg.substring("--press-frames=".length()));
+            } else if (arg.startsWith("--release-frames=")) {
+                options.gestures.releaseFrames = Integer.parseInt(arg.substring("--release-frames=".length()));
+            } else if (arg.startsWith("--long-press=")) {
+                options.gestures.longPressMs = Long.parseLong(arg.substring("--long-press=".length()));
+            } else if (arg.startsWith("--double-click=")) {
+                options.gestures.doubleClickMs = Long.parseLong(arg.substring("--double-click=".length()));
+            } else if (arg.startsWith("--scroll-step=")) {
+                options.gestures.scrollStep = Double.parseDouble(arg.substring("--scroll-step=".length()));
+            } else if (!isAppOption(arg)) {
+                throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        return options;
+    }
+
+    private static boolean isAppOption(String arg) {
+        if (APP_FLAGS.contains(arg)) {
+            return true;
+        }
+        for (String option : APP_OPTIONS) {
+            if (arg.startsWith(option)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // capture -> preprocess -> detection -> gesture/input [-> record]
+    List<FrameStage> trackingStages(Supplier<ProcessingSettings> settings, GestureStage gestureStage) {
+        return trackingStages(settings, gestureStage, this.recordFile);
+    }
+
+    // recording to the given file, or not at all if it is null
+    List<FrameStage> trackingStages(Supplier<ProcessingSettings> settings, GestureStage gestureStage, Path recordFile) {
+        List<FrameStage> stages = detectionStages(settings);
+        stages.add(gestureStage);
+        if (recordFile != null) {
+            try {
+                stages.add(new SessionRecorder(recordFile, this.recordFrames));
+            } catch (IOException e) {
+                System.err.println("Cannot record the session to " + recordFile + ": " + e);
+            }
+        }
+        return stages;
+    }
+
+    // preprocess -> detection, the part that finds the hand
+    List<FrameStage> detectionStages(Supplier<ProcessingSettings> settings) {
+        RoiTracker roiTracker = this.roiTracking ? new RoiTracker() : null;
+        FlowTracker flow = this.trackInterval > 1 ? new FlowTracker(this.trackInterval) : null;
+        List<FrameStage> stages = new ArrayList<>();
+        stages.add(new PreprocessStage(settings, roiTracker, this.pyramidScale, colorLut(this.pyramidScale),
+          this.stillSkip ? new ChangeDetector() : null, flow));
+        stages.add(new DetectionStage(roiTracker, colorLut(1), this.largestComponent, flow));
+        return stages;
+    }
+
+    // the gesture stage, with the cursor smoother if enabled
+    GestureStage gestureStage(HandTracker tracker, ScrollEventTest scroller, boolean autoCalibrate) {
+        return gestureStage(tracker, scroller, autoCalibrate, true);
+    }
+
+    // the gesture stage of one of several hands; only one of them should move the cursor
+    GestureStage gestureStage(HandTracker tracker, ScrollEventTest scroller, boolean autoCalibrate, boolean movesCursor) {
+        CursorSmoother smoother = this.smoothing && movesCursor
+          ? new CursorSmoother(scroller, this.cursorRate, this.minCutoff, this.beta) : null;
+        return new GestureStage(tracker, scroller, autoCalibrate, smoother, this.gestures, movesCursor);
+    }
+
+    // a new table for a mask at 1/scale resolution, or null when thresholding in HSV
+    ColorLut colorLut(int scale) {
+        if (!this.colorLut) {
+            return null;
+        }
+        ColorLut lut = new ColorLut(this.maskDenoise ? PreprocessStage.scaled(PreprocessStage.DENOISE_SIZE, scale) : 0);
+        CalibrationProfile profile = profile();
+        if (profile != null) {
+            lut.preset(profile.settings, profile.colorTable());
+        }
+        return lut;
+    }
+
+    // the saved calibration, loaded on first use; null if there is none or it cannot be read
+    synchronized CalibrationProfile profile() {
+        if (!this.profileLoaded && this.profileName != null) {
+            try {
+                this.profile = CalibrationProfile.load(this.profileDirectory, this.profileName);
+            } catch (IOException e) {
+                System.err.println("Cannot load calibration profile " + this.profileName + ": " + e);
+            }
+            this.profileLoaded = true;
+        }
+        return this.profile;
+    }
+
+    // the settings the pipeline starts with
+    ProcessingSettings initialSettings() {
+        CalibrationProfile profile = profile();
+        return profile != null ? profile.settings : ProcessingSettings.DEFAULTS;
+    }
+
+    // store the settings and calibrated position under the profile name, unless profiles are off
+    synchronized void saveProfile(ProcessingSettings settings, HandTracker tracker) {
+        if (this.profileName == null) {
+            return;
+        }
+        CalibrationProfile profile = CalibrationProfile.of(this.profileName, settings, tracker);
+        try {
+            profile.save(this.profileDirectory);
+            this.profile = profile;
+            this.profileLoaded = true;
+            System.out.println("Saved calibration " + this.profileName + " to " + this.profileDirectory);
+        } catch (IOException e) {
+            System.err.println("Cannot save calibration profile " + this.profileName + ": " + e);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package camouse;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javafx.animation.AnimationTimer;
+import javafx.beans.property.ObjectProperty;
+
+/**
+ * Hands the latest pipeline output to the FX thread once per pulse. Producers on any thread only
+ * overwrite a slot holding the newest value; an AnimationTimer takes what is there on the next
+ * pulse. However fast frames arrive, the FX thread sees at most one update per pulse and its event
+ * queue never fills up with stale ones. The settings label is only rebuilt when the settings changed.
+ */
+public class UiPulse {
+    private final ObjectProperty<String> settingsText;
+    private final ObjectProperty<String> statsText;
+    private final AtomicReference<ProcessingSettings> settings = new AtomicReference<>();
+    private final AtomicReference<String> stats = new AtomicReference<>();
+    private final List<PreviewRenderer> renderers = new CopyOnWriteArrayList<>();
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            drain();
+        }
+    };
+    // FX thread only
+    private ProcessingSettings shownSettings;
+
+    public UiPulse(ObjectProperty<String> settingsText, ObjectProperty<String> statsText) {
+        this.settingsText = settingsText;
+        this.statsText = statsText;
+    }
+
+    // the settings the last frame was processed with; any thread
+    public void showSettings(ProcessingSettings settings) {
+        this.settings.set(settings);
+    }
+
+    // any thread
+    public void showStats(String text) {
+        this.stats.set(text);
+    }
+
+    // images drawn by the renderer are shown on the next pulse
+    public void add(PreviewRenderer renderer) {
+        this.renderers.add(renderer);
+    }
+
+    public void remove(PreviewRenderer renderer) {
+        this.renderers.remove(renderer);
+    }
+
+    // FX thread
+    public void start() {
+        this.timer.start();
+    }
+
+    // FX thread; whatever is still in the slot is dropped
+    public void stop() {
+        this.timer.stop();
+    }
+
+    private void drain() {
+        // snapshots are immutable and only replaced when a value changes, so the reference tells
+        ProcessingSettings settings = this.settings.get();
+        if (settings != null && settings != this.shownSettings) {
+            this.shownSettings = settings;
+            this.settingsText.set(settings.toString());
+        }
+        String stats = this.stats.getAndSet(null);
+        if (stats != null) {
+            this.statsText.set(stats);
+        }
+        for (PreviewRenderer renderer : this.renderers) {
+            renderer.show();
+        }
+    }
+}
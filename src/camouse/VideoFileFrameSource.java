@@ -0,0 +1,72 @@
+package camouse;
+
+import org.opencv.core.Mat;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.Videoio;
+
+/**
+ * Replays a recorded video, or an image sequence given as a printf pattern such as {@code frames/%04d.png}.
+ * Frames come either at the recording's own rate or as fast as they can be decoded.
+ */
+public class VideoFileFrameSource implements FrameSource {
+    private static final double DEFAULT_FPS = 30;
+
+    private final String path;
+    private final boolean realTime;
+    private final boolean loop;
+    private final VideoCapture capture = new VideoCapture();
+    private FramePacer pacer;
+
+    public VideoFileFrameSource(String path, boolean realTime, boolean loop) {
+        this.path = path;
+        this.realTime = realTime;
+        this.loop = loop;
+    }
+
+    @Override
+    public boolean open() {
+        if (!this.capture.isOpened() && !this.capture.open(this.path)) {
+            return false;
+        }
+        double fps = this.capture.get(Videoio.CAP_PROP_FPS);
+        if (fps <= 0) {
+            // image sequences have no frame rate
+            fps = DEFAULT_FPS;
+        }
+        this.pacer = new FramePacer(fps);
+        return true;
+    }
+
+    @Override
+    public boolean isOpened() {
+        return this.capture.isOpened();
+    }
+
+    @Override
+    public boolean read(Mat frame) {
+        if (this.realTime) {
+            this.pacer.awaitNextFrame();
+        }
+        if (this.capture.read(frame) && !frame.empty()) {
+            return true;
+        }
+        if (!this.loop) {
+            return false;
+        }
+        // rewind; image sequences do not support seeking, so reopen them
+        this.capture.release();
+        return this.capture.open(this.path) && this.capture.read(frame) && !frame.empty();
+    }
+
+    @Override
+    public void release() {
+        if (this.capture.isOpened()) {
+            this.capture.release();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "file " + this.path;
+    }
+}
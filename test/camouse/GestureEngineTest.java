@@ -0,0 +1,230 @@
+package camouse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Feeds scripted landmark streams into a GestureEngine at 30 frames per second and checks the events
+ * it fires, with the default GestureConfig unless a test turns on the long-press right click.
+ */
+class GestureEngineTest {
+    private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(33);
+
+    // every event in order, scroll with its notches
+    private final List<String> events = new ArrayList<>();
+    private final GestureConfig config = new GestureConfig();
+    private GestureEngine engine;
+    private long nanos;
+
+    @BeforeEach
+    void setUp() {
+        this.engine = newEngine();
+        this.nanos = TimeUnit.SECONDS.toNanos(1);
+    }
+
+    // an engine for the current config, recording into events
+    private GestureEngine newEngine() {
+        return new GestureEngine(this.config, new GestureEngine.Listener() {
+            @Override
+            public void leftPress() {
+                events.add("press");
+            }
+
+            @Override
+            public void leftRelease() {
+                events.add("release");
+            }
+
+            @Override
+            public void rightClick() {
+                events.add("right");
+            }
+
+            @Override
+            public void scroll(int notches) {
+                events.add("scroll " + notches);
+            }
+        });
+    }
+
+    // holding the fold still for 800 ms right clicks
+    private void enableLongPress() {
+        this.config.longPressMs = 800;
+        this.engine = newEngine();
+    }
+
+    // frames of the index tip at x, y
+    private void frames(int count, double x, double y, boolean thumbExtended, int fingerCount) {
+        for (int i = 0; i < count; i++) {
+            this.engine.update(this.nanos, x, y, thumbExtended, fingerCount);
+            this.nanos += FRAME_NANOS;
+        }
+    }
+
+    private void open(int count) {
+        frames(count, 100, 100, true, 1);
+    }
+
+    private void folded(int count) {
+        frames(count, 100, 100, false, 1);
+    }
+
+    @Test
+    void pressGoesDownOnTheConfirmingFrame() {
+        open(5);
+        folded(this.config.pressFrames - 1);
+        assertEquals(List.of(), this.events, "one folded frame is not a press yet");
+        folded(1);
+        assertEquals(List.of("press"), this.events, "the button goes down on frame pressFrames");
+        assertTrue(this.engine.isCursorFrozen());
+        folded(3);
+        assertEquals(List.of("press"), this.events);
+        open(this.config.releaseFrames);
+        assertEquals(List.of("press", "release"), this.events);
+        assertEquals(GestureEngine.State.IDLE, this.engine.getState());
+    }
+
+    @Test
+    void holdingStillKeepsTheButtonDown() {
+        open(5);
+        folded(60);
+        assertEquals(List.of("press"), this.events, "no long-press right click unless configured");
+        assertEquals(GestureEngine.State.PRESSED, this.engine.getState());
+        open(3);
+        assertEquals(List.of("press", "release"), this.events);
+    }
+
+    @Test
+    void secondClickSoonAfterIsDoubleClick() {
+        open(5);
+        folded(3);
+        open(3);
+        // slightly off the first click, still within the tolerance
+        frames(3, 103, 98, false, 1);
+        assertTrue(this.engine.isCursorFrozen(), "the cursor stays on the first click");
+        frames(3, 103, 98, true, 1);
+        assertEquals(List.of("press", "release", "press", "release"), this.events);
+    }
+
+    @Test
+    void clickAfterTheWindowIsNoDoubleClick() {
+        open(5);
+        folded(3);
+        open(3);
+        open((int) (this.config.doubleClickMs * 1_000_000 / FRAME_NANOS) + 1);
+        assertFalse(this.engine.isCursorFrozen());
+        folded(3);
+        open(3);
+        assertEquals(List.of("press", "release", "press", "release"), this.events);
+    }
+
+    @Test
+    void movingWhileFoldedDrags() {
+        open(5);
+        folded(3);
+        frames(1, 120, 100, false, 1);
+        assertFalse(this.engine.isCursorFrozen(), "the cursor follows once the hand moves");
+        frames(30, 160, 140, false, 1);
+        frames(3, 160, 140, true, 1);
+        assertEquals(List.of("press", "release"), this.events);
+    }
+
+    @Test
+    void longPressWaitsForTheFoldToBeAClick() {
+        enableLongPress();
+        open(5);
+        folded(5);
+        assertEquals(List.of(), this.events, "the press waits until it cannot be a long press");
+        assertTrue(this.engine.isCursorFrozen());
+        open(5);
+        assertEquals(List.of("press", "release"), this.events);
+    }
+
+    @Test
+    void longPressDragsAsSoonAsTheHandMoves() {
+        enableLongPress();
+        open(5);
+        folded(3);
+        assertEquals(List.of(), this.events);
+        frames(1, 120, 100, false, 1);
+        assertEquals(List.of("press"), this.events, "the button goes down as soon as the hand moves");
+        frames(30, 160, 140, false, 1);
+        assertEquals(List.of("press"), this.events, "a drag never turns into a right click");
+        frames(3, 160, 140, true, 1);
+        assertEquals(List.of("press", "release"), this.events);
+    }
+
+    @Test
+    void longPressRightClicksWithoutLeftClick() {
+        enableLongPress();
+        open(5);
+        folded((int) (this.config.longPressMs * 1_000_000 / FRAME_NANOS) + 3);
+        assertEquals(List.of("right"), this.events);
+        assertEquals(GestureEngine.State.RIGHT_CLICKED, this.engine.getState());
+        open(5);
+        assertEquals(List.of("right"), this.events, "unfolding after a right click sends nothing");
+        assertEquals(GestureEngine.State.IDLE, this.engine.getState());
+    }
+
+    @Test
+    void secondFingerScrolls() {
+        frames(5, 100, 100, true, 1);
+        frames(3, 100, 100, true, 2);
+        assertEquals(GestureEngine.State.SCROLLING, this.engine.getState());
+        frames(1, 100, 100 + 2 * this.config.scrollStep + 1, true, 2);
+        frames(1, 100, 100 + this.config.scrollStep - 1, true, 2);
+        assertEquals(List.of("scroll 2", "scroll -1"), this.events);
+        assertTrue(this.engine.isCursorFrozen());
+        frames(3, 100, 100, true, 1);
+        assertEquals(GestureEngine.State.IDLE, this.engine.getState());
+    }
+
+    @Test
+    void singleFrameFlickersAreIgnored() {
+        open(5);
+        for (int i = 0; i < 10; i++) {
+            folded(1);
+            open(1);
+            frames(1, 100, 100, true, 2);
+            open(1);
+        }
+        assertEquals(List.of(), this.events);
+        assertEquals(GestureEngine.State.IDLE, this.engine.getState());
+
+        // a pressed button survives one frame of the thumb showing
+        folded(3);
+        open(1);
+        folded(1);
+        assertEquals(List.of("press"), this.events);
+    }
+
+    @Test
+    void losingTheHandReleasesTheButton() {
+        open(5);
+        folded(3);
+        this.engine.lost();
+        assertEquals(List.of("press"), this.events, "one lost frame is not enough");
+        this.engine.lost();
+        assertEquals(List.of("press", "release"), this.events);
+        assertEquals(GestureEngine.State.IDLE, this.engine.getState());
+    }
+
+    @Test
+    void losingTheHandBeforeALongPressWentDownSendsNothing() {
+        enableLongPress();
+        open(5);
+        folded(3);
+        this.engine.lost();
+        this.engine.lost();
+        assertEquals(List.of(), this.events);
+        assertEquals(GestureEngine.State.IDLE, this.engine.getState());
+    }
+}